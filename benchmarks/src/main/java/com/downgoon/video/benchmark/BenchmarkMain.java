@@ -0,0 +1,33 @@
+package com.downgoon.video.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * 运行全部（或命令行选中的）基准，默认打开GC分析器，结果以JSON写到 target/jmh-result.json，
+ * 便于跨版本对比每帧耗时（ns/frame）和每帧分配（gc.alloc.rate.norm，bytes/frame）。
+ * <p>
+ * 其它JMH命令行参数照常可用，例如只跑检测：{@code java -jar target/benchmarks.jar DetectBenchmark}
+ *
+ * @author downgoon@qq.com
+ * @since 2026-10-17
+ */
+public class BenchmarkMain {
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        Options options = new OptionsBuilder().parent(commandLine)
+                .addProfiler(GCProfiler.class)
+                .resultFormat(commandLine.getResultFormat().orElse(ResultFormatType.JSON))
+                .result(commandLine.getResult().orElse("target/jmh-result.json"))
+                .build();
+        new Runner(options).run();
+    }
+
+}
@@ -0,0 +1,62 @@
+package com.downgoon.video.benchmark;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.bytedeco.javacv.Frame;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.downgoon.video.image.ImageConvertor;
+import com.downgoon.video.image.MatrixImage;
+
+/**
+ * {@link ImageConvertor#toMatrix(Frame, MatrixImage)}：BGR 帧转换为 ARGB 图片的耗时，需要 JavaCV 的本地库。
+ *
+ * @author downgoon@qq.com
+ * @since 2026-10-17
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConvertBenchmark {
+
+    @Param({"640x480", "1280x720", "1920x1080", "3840x2160"})
+    public String resolution;
+
+    private Frame frame;
+
+    private MatrixImage matrixImage;
+
+    @Setup
+    public void setup() {
+        int width = FrameSizes.width(resolution);
+        int height = FrameSizes.height(resolution);
+        frame = new Frame(width, height, Frame.DEPTH_UBYTE, 3);
+        ByteBuffer pixels = (ByteBuffer) frame.image[0];
+        Random random = new Random(20161017L);
+        for (int i = 0; i < pixels.capacity(); i++) {
+            pixels.put(i, (byte) random.nextInt(256));
+        }
+        matrixImage = new MatrixImage(width, height);
+    }
+
+    @Benchmark
+    public MatrixImage toMatrix() {
+        return ImageConvertor.toMatrix(frame, matrixImage);
+    }
+
+}
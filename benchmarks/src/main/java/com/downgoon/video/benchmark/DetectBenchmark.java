@@ -0,0 +1,103 @@
+package com.downgoon.video.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.downgoon.video.ai.RectSink;
+import com.downgoon.video.ai.VideoMotionDetector;
+import com.downgoon.video.image.MatrixImage;
+import com.downgoon.video.util.Rect;
+
+/**
+ * {@link VideoMotionDetector#detect(MatrixImage, MatrixImage, RectSink)}：不同分辨率、不同运动密度（变化区块的百分比）下每帧的耗时。
+ * 变化的区块随机分布，画面其余部分叠加低于阈值的噪声。
+ *
+ * @author downgoon@qq.com
+ * @since 2026-10-17
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DetectBenchmark {
+
+    @Param({"640x480", "1280x720", "1920x1080", "3840x2160"})
+    public String resolution;
+
+    /**
+     * 运动区块的百分比
+     */
+    @Param({"0", "5", "50", "100"})
+    public int density;
+
+    private VideoMotionDetector motionDetector;
+
+    private MatrixImage currFrame;
+
+    private MatrixImage diffFrame;
+
+    private RectSink sink;
+
+    private Blackhole blackhole;
+
+    @Setup
+    public void setup(final Blackhole blackhole) {
+        int width = FrameSizes.width(resolution);
+        int height = FrameSizes.height(resolution);
+        int blockSize = 10;
+        motionDetector = new VideoMotionDetector(blockSize, 30);
+        diffFrame = new MatrixImage(width, height);
+        currFrame = new MatrixImage(width, height);
+
+        Random random = new Random(20161017L);
+        int[] diff = diffFrame.getRgbArray();
+        int[] curr = currFrame.getRgbArray();
+        for (int i = 0; i < diff.length; i++) {
+            int gray = 64 + random.nextInt(128);
+            diff[i] = 0xFF000000 | (gray << 16) | (gray << 8) | gray;
+            // noise below the colour threshold
+            curr[i] = diff[i] + random.nextInt(8);
+        }
+        for (int by = 0; by < height / blockSize; by++) {
+            for (int bx = 0; bx < width / blockSize; bx++) {
+                if (random.nextInt(100) < density) {
+                    for (int y = by * blockSize; y < (by + 1) * blockSize; y++) {
+                        for (int x = bx * blockSize; x < (bx + 1) * blockSize; x++) {
+                            curr[y * width + x] = diff[y * width + x] ^ 0x00FFFFFF;
+                        }
+                    }
+                }
+            }
+        }
+
+        this.blackhole = blackhole;
+        this.sink = new RectSink() {
+
+            @Override
+            public void accept(Rect rect) {
+                blackhole.consume(rect);
+            }
+        };
+    }
+
+    @Benchmark
+    public int detect() {
+        return motionDetector.detect(currFrame, diffFrame, sink);
+    }
+
+}
@@ -0,0 +1,22 @@
+package com.downgoon.video.benchmark;
+
+/**
+ * 基准中使用的画面尺寸，形如 {@code 1280x720}
+ *
+ * @author downgoon@qq.com
+ * @since 2026-10-17
+ */
+final class FrameSizes {
+
+    private FrameSizes() {
+    }
+
+    static int width(String resolution) {
+        return Integer.parseInt(resolution.substring(0, resolution.indexOf('x')));
+    }
+
+    static int height(String resolution) {
+        return Integer.parseInt(resolution.substring(resolution.indexOf('x') + 1));
+    }
+
+}
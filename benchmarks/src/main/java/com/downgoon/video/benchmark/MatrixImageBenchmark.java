@@ -0,0 +1,95 @@
+package com.downgoon.video.benchmark;
+
+import java.awt.Color;
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.downgoon.video.image.MatrixImage;
+import com.downgoon.video.image.MatrixImageIO;
+
+/**
+ * {@link MatrixImage} 的标记、复制，以及 {@link MatrixImageIO} 的保存、加载
+ *
+ * @author downgoon@qq.com
+ * @since 2026-10-17
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class MatrixImageBenchmark {
+
+    private static final Color MARK_COLOR = new Color(0x81d8cf);
+
+    @Param({"1280x720", "1920x1080"})
+    public String resolution;
+
+    private MatrixImage matrixImage;
+
+    private File imageFile;
+
+    @Setup
+    public void setup() throws IOException {
+        int width = FrameSizes.width(resolution);
+        int height = FrameSizes.height(resolution);
+        matrixImage = new MatrixImage(width, height);
+        int[] rgbArray = matrixImage.getRgbArray();
+        Random random = new Random(20161017L);
+        for (int i = 0; i < rgbArray.length; i++) {
+            rgbArray[i] = 0xFF000000 | random.nextInt(1 << 24);
+        }
+        imageFile = File.createTempFile("matrix-image-benchmark", ".png");
+        MatrixImageIO.saveImage(matrixImage, imageFile.getPath());
+    }
+
+    @TearDown
+    public void tearDown() {
+        imageFile.delete();
+    }
+
+    @Benchmark
+    public MatrixImage drawRect() {
+        matrixImage.drawRect(100, 100, 320, 240, 2, MARK_COLOR);
+        return matrixImage;
+    }
+
+    @Benchmark
+    public MatrixImage fillRect() {
+        matrixImage.fillRect(100, 100, 320, 240, MARK_COLOR);
+        return matrixImage;
+    }
+
+    @Benchmark
+    public MatrixImage cloneImage() {
+        return matrixImage.clone();
+    }
+
+    @Benchmark
+    public File save() throws IOException {
+        MatrixImageIO.saveImage(matrixImage, imageFile.getPath());
+        return imageFile;
+    }
+
+    @Benchmark
+    public MatrixImage load() throws IOException {
+        return MatrixImageIO.loadImage(imageFile.getPath());
+    }
+
+}
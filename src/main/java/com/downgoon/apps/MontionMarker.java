@@ -3,15 +3,30 @@ package com.downgoon.apps;
 import java.awt.BorderLayout;
 import java.awt.Color;
 import java.awt.Container;
+import java.io.File;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import javax.swing.JFrame;
 
 import com.downgoon.ui.MatrixImagePanel;
+import com.downgoon.video.ai.GaussianMixtureDetector;
+import com.downgoon.video.ai.MotionDetector;
+import com.downgoon.video.ai.RunningAverageBackground;
 import com.downgoon.video.ai.VideoMotionDetector;
 import com.downgoon.video.camera.CameraCapture;
+import com.downgoon.video.camera.CameraInterface;
+import com.downgoon.video.camera.VideoFileCapture;
 import com.downgoon.video.camera.CameraException;
 import com.downgoon.video.image.MatrixImage;
+import com.downgoon.video.metrics.MotionMetrics;
+import com.downgoon.video.pipeline.OverflowListener;
+import com.downgoon.video.pipeline.OverflowPolicy;
+import com.downgoon.video.pipeline.Pipeline;
+import com.downgoon.video.pipeline.PipelineStage;
+import com.downgoon.video.pipeline.Recycler;
+import com.downgoon.video.pipeline.StageHandler;
+import com.downgoon.video.record.MotionRecorder;
 import com.downgoon.video.util.Rect;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -38,18 +53,84 @@ public class MontionMarker extends JFrame {
     /**
      * capture camera continuously
      */
-    private CameraCapture cameraCapturer;
+    private CameraInterface cameraCapturer;
+
+    /**
+     * 视频文件或网络地址，代替摄像头；为 null 时使用摄像头
+     */
+    private String videoSource;
 
     /**
      * Motion Detection
      */
-    private VideoMotionDetector motionDetecor = new VideoMotionDetector();
+    private MotionDetector motionDetecor = new VideoMotionDetector();
+
+    /**
+     * 运动录像的目录，为 null 时不录像
+     */
+    private File recordDir;
+
+    /**
+     * 运动触发的录像，在标记阶段送入标记后的帧
+     */
+    private MotionRecorder motionRecorder;
+
+    /**
+     * capture, detect, mark and render stages
+     */
+    private Pipeline pipeline;
+
+    /**
+     * 每个阶段输入缓冲区的容量（帧数）：容量小则延迟低
+     */
+    private static final int STAGE_CAPACITY = 2;
+
+    private static final Color MARK_COLOR = new Color(0x81d8cf);
+
+    /**
+     * 各环节耗时和计数，通过JMX查看，并定期打日志
+     */
+    private final MotionMetrics metrics = new MotionMetrics("video-motion-detection");
+
+    /**
+     * 抓到的帧借自帧缓冲池，丢弃、处理失败或者停止时归还
+     */
+    private final Recycler<MatrixImage> frameRecycler = new Recycler<MatrixImage>() {
+
+        @Override
+        public void recycle(MatrixImage frame) {
+            frame.release();
+        }
+    };
+
+    /**
+     * 只有缓冲区满被丢弃的帧才计入丢帧
+     */
+    private final OverflowListener dropCounter = new OverflowListener() {
+
+        @Override
+        public void onOverflow(PipelineStage<?, ?> stage) {
+            metrics.frameDropped();
+        }
+    };
 
     public MontionMarker(int imageWidth, int imageHeight) {
         this.imageWidth = imageWidth;
         this.imageHeight = imageHeight;
     }
 
+    public void setMotionDetector(MotionDetector motionDetecor) {
+        this.motionDetecor = motionDetecor;
+    }
+
+    public void setVideoSource(String videoSource) {
+        this.videoSource = videoSource;
+    }
+
+    public void setRecordDir(File recordDir) {
+        this.recordDir = recordDir;
+    }
+
     public void start() throws CameraException {
 
         // 如果应用意外退出，释放摄像头资源
@@ -58,22 +139,56 @@ public class MontionMarker extends JFrame {
         // 启动摄像头
         startCamera();
 
+        // 指标：JMX 和定期日志
+        startMetrics();
+
+        // 运动触发的录像
+        startRecorder();
+
         // 勾勒UI画板，
         startPanel();
 
-        // 启动单独的线程抓取摄像头的图片，并推送到画板，快速、持续，人眼就会看为视频
+        // 启动流水线抓取摄像头的图片，检测、标记后推送到画板，快速、持续，人眼就会看为视频
         startCamera2PanelContinuously("video-motion-detection");
     }
 
     private void startCamera() throws CameraException {
-        this.cameraCapturer = new CameraCapture();
+        if (videoSource != null) {
+            VideoFileCapture videoFileCapture = new VideoFileCapture(videoSource);
+            videoFileCapture.setMetrics(metrics);
+            this.cameraCapturer = videoFileCapture;
+        } else {
+            CameraCapture cameraCapture = new CameraCapture();
+            cameraCapture.setMetrics(metrics);
+            this.cameraCapturer = cameraCapture;
+        }
         // Mac 电脑的摄像头编号为 0
         cameraCapturer.connect(0, this.imageWidth, this.imageHeight);
     }
 
+    private void startMetrics() {
+        motionDetecor.setMetrics(metrics);
+        metrics.registerMBean();
+        metrics.startLogging(10, TimeUnit.SECONDS);
+    }
+
+    private void startRecorder() {
+        if (recordDir == null) {
+            return;
+        }
+        double frameRate = 25;
+        if (cameraCapturer instanceof VideoFileCapture && ((VideoFileCapture) cameraCapturer).getFrameRate() > 0) {
+            frameRate = ((VideoFileCapture) cameraCapturer).getFrameRate();
+        }
+        // 预录3秒，静默5秒后结束
+        motionRecorder = new MotionRecorder(recordDir, "motion", frameRate, 3, 5000L);
+        motionRecorder.start();
+    }
+
     private void startPanel() {
         /* video Panel */
         this.imagePanel = new MatrixImagePanel();
+        this.imagePanel.setReleaseReplaced(true);
 
         /* append into container of the JFrame */
         Container container = getContentPane();
@@ -87,83 +202,115 @@ public class MontionMarker extends JFrame {
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
     }
 
-    private void startCamera2PanelContinuously(String threadName) {
-        Thread motionDetectThread = new Thread(new Runnable() {
-
-            @Override
-            public void run() {
-
-                MatrixImage lastFrame = null;
+    /**
+     * 抓图、检测、标记、显示各占一个线程，用环形缓冲区串起来：检测偶尔变慢时只丢掉积压的旧帧，抓图和显示不受影响。
+     * <p>
+     * 抓图和格式转换放在同一个阶段：抓图器每次抓图都复用同一块本地内存，必须在下一次抓图之前转换完。
+     */
+    private void startCamera2PanelContinuously(String pipelineName) {
+        pipeline = new Pipeline(pipelineName);
+        pipeline.source("capture", new StageHandler<Void, MatrixImage>() {
 
-                int failCnt = 0;
-                while (cameraCapturer != null && cameraCapturer.isConnected()) {
+            private int failCnt = 0;
 
-                    try {
+            @Override
+            public MatrixImage handle(Void input) throws Exception {
+                if (cameraCapturer == null || !cameraCapturer.isConnected()) {
+                    LOGGER.warn("camera not connected, stop pipeline");
+                    pipeline.stop();
+                    return null;
+                }
 
-                        MatrixImage currFrame = null;
-                        try {
-                            currFrame = cameraCapturer.getFrame();
-                            failCnt = 0;
-                        } catch (CameraException ce) {
-                            failCnt++;
-                            LOGGER.error("camera capture exception: {}", ce.getMessage(), ce);
-                            if (failCnt > 3) {
-                                Thread.sleep(100L);
-                                if (!cameraCapturer.isConnected()) {
-                                    LOGGER.warn("camera not connected, break capture loop");
-                                    break;
-                                }
-                            }
+                try {
+                    MatrixImage currFrame = cameraCapturer.getFrame();
+                    failCnt = 0;
+                    return currFrame;
+                } catch (CameraException ce) {
+                    failCnt++;
+                    LOGGER.error("camera capture exception: {}", ce.getMessage(), ce);
+                    if (failCnt > 3) {
+                        Thread.sleep(100L);
+                    }
+                    return null;
+                }
+            }
 
-                        }
+        }).then("detect", new StageHandler<MatrixImage, MotionFrame>() {
 
-                        MatrixImage showFrame = currFrame;
+            @Override
+            public MotionFrame handle(MatrixImage currFrame) throws Exception {
+                // motion detection: 对比的参考（上一帧或背景模型）由检测引擎自己维护
+                return new MotionFrame(currFrame, motionDetecor.detect(currFrame));
+            }
 
-                        if (lastFrame != null) {
-                            // motion detection
-                            List<Rect> motionRegions = motionDetecor.detect(currFrame, lastFrame);
+        }, STAGE_CAPACITY, OverflowPolicy.DROP_OLDEST).recycle(frameRecycler).onOverflow(dropCounter)
+          .then("mark", new StageHandler<MotionFrame, MatrixImage>() {
 
-                            for (int i = 0; i < motionRegions.size(); i++) {
-                                Rect rect = motionRegions.get(i);
+            @Override
+            public MatrixImage handle(MotionFrame motionFrame) throws Exception {
+                // 检测引擎不持有当前帧，直接在当前帧上标记，不再另外分配一帧
+                MatrixImage markFrame = motionFrame.frame;
+                for (Rect rect : motionFrame.motionRegions) {
+                    // mark motion block with a tiffany blue rectangle
+                    // NICE-RED: 0xF01D39   NICE-BLUE: 0x0F76C1  TIFFANY-BLUE: 0x81d8cf
+                    markFrame.drawRect(rect.getX1(), rect.getY1(), rect.getWidth(), rect.getHeight(), 2, MARK_COLOR);
+                }
+                if (motionRecorder != null) {
+                    // 标记之后不再修改这一帧，录像线程可以放心读取
+                    motionRecorder.offer(markFrame, !motionFrame.motionRegions.isEmpty());
+                }
+                return markFrame;
+            }
 
-                                MatrixImage markFrame = new MatrixImage(imageWidth, imageHeight);
-                                // deep copy and motion mark
-                                MatrixImage.copyRgbArray(currFrame, markFrame);
+        }, STAGE_CAPACITY, OverflowPolicy.DROP_OLDEST).recycle(new Recycler<MotionFrame>() {
 
-                                // mark motion block with a tiffany blue rectangle
-                                // NICE-RED: 0xF01D39   NICE-BLUE: 0x0F76C1  TIFFANY-BLUE: 0x81d8cf
-                                markFrame.drawRect(rect.getX1(), rect.getY1(), rect.getWidth(), rect.getHeight(), 2,
-                                        new Color(0x81d8cf));
+            @Override
+            public void recycle(MotionFrame motionFrame) {
+                motionFrame.frame.release();
+            }
 
-                                showFrame = markFrame;
-                            }
+        }).onOverflow(dropCounter).then("render", new StageHandler<MatrixImage, Void>() {
 
-                        }
+            @Override
+            public Void handle(MatrixImage showFrame) throws Exception {
+                // push the marked image into the panel: 画板异步绘制，由它在替换这一帧时归还
+                long beginNanos = System.nanoTime();
+                imagePanel.setMatrixImage(showFrame);
+                metrics.recordRender(System.nanoTime() - beginNanos);
+                return null;
+            }
 
-                        lastFrame = currFrame;
+        }, STAGE_CAPACITY, OverflowPolicy.DROP_OLDEST).recycle(frameRecycler).onOverflow(dropCounter);
+        pipeline.start();
+    }
 
-                        // push original current image or marked image into the panel
-                        imagePanel.setMatrixImage(showFrame);
+    /**
+     * 一帧及其运动区域
+     */
+    private static class MotionFrame {
 
-                    } catch (Exception e) {
-                        // don't break from the loop
-                        LOGGER.error("while true job exception: {}", e.getMessage(), e);
-                    }
+        final MatrixImage frame;
 
-                } // end while (true)
+        final List<Rect> motionRegions;
 
-            }
-        }, threadName);
-        motionDetectThread.start();
+        MotionFrame(MatrixImage frame, List<Rect> motionRegions) {
+            this.frame = frame;
+            this.motionRegions = motionRegions;
+        }
     }
 
-
     private void startShutdownHook() {
         Runtime.getRuntime().addShutdownHook(new Thread("video-motion-hook") {
 
             @Override
             public void run() {
                 LOGGER.info("shutdown hooking ...");
+                if (pipeline != null) {
+                    pipeline.stop();
+                }
+                if (motionRecorder != null) {
+                    motionRecorder.stop();
+                }
                 try {
                     if (cameraCapturer != null && cameraCapturer.isConnected()) {
                         LOGGER.info("camera capture stopping ...");
@@ -182,6 +329,23 @@ public class MontionMarker extends JFrame {
 
     public static void main(String args[]) throws CameraException {
         MontionMarker montionMarker = new MontionMarker(1280, 720);
+        // -Dmotion.engine=mog 使用混合高斯背景建模引擎
+        // -Dmotion.learningRate=0.05 对比背景模型，而不是上一帧
+        // -Dmotion.video=/path/to/video.mp4 播放视频文件（或 rtsp:// 等网络地址），代替摄像头
+        // -Dmotion.record=/path/to/dir 检测到运动时录像（含运动前3秒），写到该目录
+        montionMarker.setVideoSource(System.getProperty("motion.video"));
+        String recordDir = System.getProperty("motion.record");
+        if (recordDir != null) {
+            montionMarker.setRecordDir(new File(recordDir));
+        }
+        String learningRate = System.getProperty("motion.learningRate");
+        if ("mog".equals(System.getProperty("motion.engine"))) {
+            montionMarker.setMotionDetector(new GaussianMixtureDetector());
+        } else if (learningRate != null) {
+            VideoMotionDetector motionDetector = new VideoMotionDetector();
+            motionDetector.setReferenceModel(new RunningAverageBackground(Double.parseDouble(learningRate)));
+            montionMarker.setMotionDetector(motionDetector);
+        }
         montionMarker.start();
         LOGGER.info("motion marker started ...");
     }
@@ -0,0 +1,266 @@
+package com.downgoon.apps;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.downgoon.video.ai.GaussianMixtureDetector;
+import com.downgoon.video.ai.MotionDetector;
+import com.downgoon.video.ai.RunningAverageBackground;
+import com.downgoon.video.ai.VideoMotionDetector;
+import com.downgoon.video.camera.CameraException;
+import com.downgoon.video.camera.VideoFileCapture;
+import com.downgoon.video.image.FramePool;
+import com.downgoon.video.image.MatrixImage;
+import com.downgoon.video.index.BlockMotionIndex;
+import com.downgoon.video.index.BlockMotionIndexWriter;
+import com.downgoon.video.stream.MotionSegment;
+import com.downgoon.video.stream.MotionSegmenter;
+import com.downgoon.video.util.Rect;
+
+/**
+ * 批量处理录像：不需要界面和摄像头，把一个目录下的视频文件按CPU核数并行检测，
+ * 每个视频输出一个运动片段文件 {@code <视频文件名>.motion}，每行一个片段：
+ *
+ * <pre>
+ * # video=gate-0101.mp4 width=1280 height=720 fps=25.00 frames=90000
+ * 1520 1733 312,180,540,420 900,60,1010,200
+ * </pre>
+ * 同时输出区块运动索引 {@code <视频文件名>.blocks}，记录每一帧的运动区块，时间戳为帧在视频中的毫秒数，
+ * 可用 {@link BlockMotionIndex} 按时间和区域查询。
+ * <p>
+ * 用法：{@code MotionBatch <视频目录> [输出目录]}，可选参数：
+ * <ul>
+ * <li>{@code -Dmotion.batch.parallel=N} 同时处理的视频个数，默认CPU核数；</li>
+ * <li>{@code -Dmotion.batch.maxFrames=M} 所有视频合计已解码、未处理完的帧数上限，用于限制内存，默认64；</li>
+ * <li>{@code -Dmotion.batch.gap=G} 片段内允许的最长无运动间隔（帧数），默认12；</li>
+ * <li>{@code -Dmotion.engine=mog}、{@code -Dmotion.learningRate=0.05} 与 {@link MontionMarker} 相同。</li>
+ * </ul>
+ *
+ * @author downgoon@qq.com
+ * @since 2026-10-17
+ */
+public class MotionBatch {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MotionBatch.class);
+
+    private static final List<String> VIDEO_EXTENSIONS = Arrays.asList("mp4", "avi", "mov", "mkv", "flv", "ts",
+            "webm", "mpg", "mpeg", "h264", "264");
+
+    /**
+     * 每个视频在途的帧数：提前解码的队列之外，还有一帧在解码、一帧在检测
+     */
+    private static final int FRAMES_OUTSIDE_QUEUE = 2;
+
+    private final File outputDir;
+
+    private final int parallel;
+
+    private final int aheadFrames;
+
+    private final int maxGapFrames;
+
+    private final FramePool framePool;
+
+    /**
+     * @param outputDir    输出目录
+     * @param parallel     同时处理的视频个数
+     * @param maxFrames    在途帧数上限
+     * @param maxGapFrames 片段内允许的最长无运动间隔
+     */
+    public MotionBatch(File outputDir, int parallel, int maxFrames, int maxGapFrames) {
+        this.outputDir = outputDir;
+        // 每个视频至少要有 1 + FRAMES_OUTSIDE_QUEUE 帧在途
+        this.parallel = Math.max(1, Math.min(parallel, maxFrames / (1 + FRAMES_OUTSIDE_QUEUE)));
+        this.aheadFrames = Math.max(1, maxFrames / this.parallel - FRAMES_OUTSIDE_QUEUE);
+        this.maxGapFrames = maxGapFrames;
+        this.framePool = new FramePool(Math.max(1, maxFrames));
+    }
+
+    /**
+     * 并行处理目录下的所有视频，等待全部完成
+     *
+     * @return 处理成功的视频个数
+     */
+    public int process(File videoDir) throws InterruptedException {
+        File[] videos = videoDir.listFiles(new FileFilter() {
+
+            @Override
+            public boolean accept(File file) {
+                String name = file.getName();
+                int dot = name.lastIndexOf('.');
+                return file.isFile() && dot > 0
+                        && VIDEO_EXTENSIONS.contains(name.substring(dot + 1).toLowerCase(Locale.ROOT));
+            }
+        });
+        if (videos == null || videos.length == 0) {
+            LOGGER.warn("no video found in {}", videoDir);
+            return 0;
+        }
+        Arrays.sort(videos);
+
+        LOGGER.info("processing {} videos, {} in parallel, {} frames decoded ahead per video", videos.length,
+                parallel, aheadFrames);
+        long begin = System.nanoTime();
+
+        ExecutorService executor = Executors.newFixedThreadPool(parallel);
+        List<Future<Long>> results = new ArrayList<>();
+        for (final File video : videos) {
+            results.add(executor.submit(new Callable<Long>() {
+
+                @Override
+                public Long call() throws Exception {
+                    return processVideo(video);
+                }
+            }));
+        }
+        executor.shutdown();
+
+        int succeeded = 0;
+        long frames = 0;
+        for (int i = 0; i < videos.length; i++) {
+            try {
+                frames += results.get(i).get();
+                succeeded++;
+            } catch (ExecutionException e) {
+                LOGGER.error("video {} failure: {}", videos[i], e.getCause().getMessage(), e.getCause());
+            }
+        }
+
+        double seconds = (System.nanoTime() - begin) / 1e9;
+        LOGGER.info("{}/{} videos processed, {} frames in {} s, {} fps", succeeded, videos.length, frames,
+                String.format("%.1f", seconds), String.format("%.1f", frames / seconds));
+        return succeeded;
+    }
+
+    /**
+     * 检测一个视频，写出它的运动片段
+     *
+     * @return 帧数
+     */
+    private long processVideo(File video) throws CameraException, IOException {
+        VideoFileCapture capture = new VideoFileCapture(video.getPath(), VideoFileCapture.Pacing.AS_FAST_AS_POSSIBLE,
+                aheadFrames);
+        capture.setFramePool(framePool);
+        capture.connect(0);
+
+        MotionDetector motionDetector = createMotionDetector();
+        MotionSegmenter segmenter = new MotionSegmenter(maxGapFrames);
+        File indexFile = new File(outputDir, video.getName() + ".blocks");
+        indexFile.delete();
+        BlockMotionIndexWriter indexWriter = null;
+        double frameRate = capture.getFrameRate() > 0 ? capture.getFrameRate() : 25;
+        long frameIndex = 0;
+        boolean completed = false;
+        try {
+            // 已经连上视频，创建索引失败时也要断开
+            indexWriter = new BlockMotionIndexWriter(indexFile, capture.getWidth(), capture.getHeight(),
+                    motionDetector.getBlockSizeThreshold());
+            long[] motionBlocks = new long[indexWriter.getBitmapLength()];
+            while (capture.isConnected()) {
+                MatrixImage frame;
+                try {
+                    frame = capture.getFrame();
+                } catch (CameraException ce) {
+                    if (capture.isEndOfStream()) {
+                        break;
+                    }
+                    // 解码失败：不能当作视频结束，否则会留下不完整的结果
+                    throw ce;
+                }
+                try {
+                    List<Rect> motionRegions = motionDetector.detect(frame);
+                    motionDetector.copyMotionBlocks(motionBlocks);
+                    indexWriter.append(Math.round(frameIndex * 1000 / frameRate), motionBlocks);
+                    segmenter.accept(frameIndex++, motionRegions);
+                } finally {
+                    frame.release();
+                }
+            }
+            completed = true;
+        } finally {
+            try {
+                capture.disconnect();
+            } finally {
+                if (indexWriter != null) {
+                    indexWriter.close();
+                }
+                if (!completed) {
+                    indexFile.delete();
+                }
+            }
+        }
+        segmenter.finish();
+
+        File output = new File(outputDir, video.getName() + ".motion");
+        Writer writer = new OutputStreamWriter(new FileOutputStream(output), Charset.forName("UTF-8"));
+        boolean written = false;
+        try {
+            writer.write(String.format(Locale.ROOT, "# video=%s width=%d height=%d fps=%.2f frames=%d%n",
+                    video.getName(), capture.getWidth(), capture.getHeight(), capture.getFrameRate(), frameIndex));
+            for (MotionSegment segment : segmenter.getSegments()) {
+                writer.write(segment.toString());
+                writer.write('\n');
+            }
+            written = true;
+        } finally {
+            writer.close();
+            if (!written) {
+                output.delete();
+            }
+        }
+        LOGGER.info("{}: {} frames, {} motion segments", video.getName(), frameIndex,
+                segmenter.getSegments().size());
+        return frameIndex;
+    }
+
+    private static MotionDetector createMotionDetector() {
+        String learningRate = System.getProperty("motion.learningRate");
+        if ("mog".equals(System.getProperty("motion.engine"))) {
+            return new GaussianMixtureDetector();
+        }
+        VideoMotionDetector motionDetector = new VideoMotionDetector();
+        if (learningRate != null) {
+            motionDetector.setReferenceModel(new RunningAverageBackground(Double.parseDouble(learningRate)));
+        }
+        return motionDetector;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        if (args.length < 1) {
+            System.err.println("usage: MotionBatch <video dir> [output dir]");
+            System.exit(1);
+        }
+        File videoDir = new File(args[0]);
+        File outputDir = args.length > 1 ? new File(args[1]) : videoDir;
+        if (!outputDir.isDirectory() && !outputDir.mkdirs()) {
+            System.err.println("cannot create output dir: " + outputDir);
+            System.exit(1);
+        }
+
+        int parallel = Integer.getInteger("motion.batch.parallel", Runtime.getRuntime().availableProcessors());
+        int maxFrames = Integer.getInteger("motion.batch.maxFrames", 64);
+        int maxGapFrames = Integer.getInteger("motion.batch.gap", 12);
+
+        MotionBatch motionBatch = new MotionBatch(outputDir, parallel, maxFrames, maxGapFrames);
+        int succeeded = motionBatch.process(videoDir);
+        System.exit(succeeded > 0 ? 0 : 2);
+    }
+
+}
@@ -0,0 +1,93 @@
+package com.downgoon.apps;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.downgoon.video.ai.GaussianMixtureDetector;
+import com.downgoon.video.ai.MotionDetector;
+import com.downgoon.video.ai.RectSink;
+import com.downgoon.video.ai.RunningAverageBackground;
+import com.downgoon.video.ai.VideoMotionDetector;
+import com.downgoon.video.camera.CameraException;
+import com.downgoon.video.camera.SyntheticCamera;
+import com.downgoon.video.image.MatrixImage;
+import com.downgoon.video.util.Rect;
+
+/**
+ * 运动检测引擎的吞吐量对比：用同一段合成画面（带噪声的背景上移动的方块）逐帧驱动各个引擎，
+ * 输出每个引擎的帧率和平均运动区域个数，用于按摄像头权衡计算代价与准确度。
+ * <p>
+ * 画面由 {@link SyntheticCamera} 逐帧生成到同一张图片上，每个引擎使用相同的种子，看到的画面完全相同；
+ * 不预先生成整段视频，内存占用与帧数无关，只统计检测本身的耗时。
+ * <p>
+ * 用法：{@code MotionDetectorComparison [width] [height] [frames]}
+ *
+ * @author downgoon@qq.com
+ * @since 2026-10-17
+ */
+public class MotionDetectorComparison {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MotionDetectorComparison.class);
+
+    private static final long SEED = 20161017L;
+
+    public static void main(String[] args) throws CameraException {
+        int width = args.length > 0 ? Integer.parseInt(args[0]) : 1280;
+        int height = args.length > 1 ? Integer.parseInt(args[1]) : 720;
+        int frames = args.length > 2 ? Integer.parseInt(args[2]) : 300;
+
+        VideoMotionDetector averageDetector = new VideoMotionDetector();
+        averageDetector.setReferenceModel(new RunningAverageBackground(0.05));
+
+        compare("frame-diff", new VideoMotionDetector(), width, height, frames);
+        compare("running-average", averageDetector, width, height, frames);
+        compare("gaussian-mixture-2", new GaussianMixtureDetector(10, 2, 0.01f), width, height, frames);
+        compare("gaussian-mixture-3", new GaussianMixtureDetector(10, 3, 0.01f), width, height, frames);
+    }
+
+    private static void compare(String name, MotionDetector motionDetector, int width, int height, int frames)
+            throws CameraException {
+        final int[] regions = new int[1];
+        RectSink counter = new RectSink() {
+
+            @Override
+            public void accept(Rect rect) {
+                regions[0]++;
+            }
+        };
+
+        // warm up, then measure on the same frames
+        MatrixImage frame = new MatrixImage(width, height);
+        run(motionDetector, counter, frame, frames);
+        regions[0] = 0;
+        long nanos = run(motionDetector, counter, frame, frames);
+
+        LOGGER.info("{}: {} fps, {} us/frame, {} regions/frame", name,
+                String.format("%.1f", frames * 1e9 / nanos), nanos / frames / 1000,
+                String.format("%.2f", regions[0] / (double) frames));
+    }
+
+    /**
+     * 合成画面：带噪声的背景，一个方块来回移动。逐帧画到 frame 上再检测
+     *
+     * @return 检测的总耗时，不含生成画面
+     */
+    private static long run(MotionDetector motionDetector, RectSink counter, MatrixImage frame, int frames)
+            throws CameraException {
+        SyntheticCamera camera = new SyntheticCamera(SEED);
+        camera.setMovingRects(1, Math.max(20, frame.getHeight() / 6), 8);
+        camera.setNoise(6);
+        camera.connect(0, frame.getWidth(), frame.getHeight());
+
+        long nanos = 0;
+        for (int i = 0; i < frames; i++) {
+            camera.render(frame);
+            long begin = System.nanoTime();
+            motionDetector.detect(frame, counter);
+            nanos += System.nanoTime() - begin;
+        }
+        camera.disconnect();
+        return nanos;
+    }
+
+}
@@ -22,6 +22,16 @@ public class MatrixImagePanel extends JPanel {
 
 	private boolean autoZoom;
 
+	/**
+	 * 替换图片时是否归还旧图，图片借自帧缓冲池时打开
+	 */
+	private boolean releaseReplaced;
+
+	/**
+	 * 替换和绘制互斥：正在绘制的图片不会被归还
+	 */
+	private final Object imageLock = new Object();
+
 	private int lastWidth = 0;
 	private int lastHeight = 0;
 
@@ -34,7 +44,14 @@ public class MatrixImagePanel extends JPanel {
 	 * set image associated with the panel
 	 */
 	public void setMatrixImage(MatrixImage image) {
-		this.matrixImage = image;
+		synchronized (imageLock) {
+			MatrixImage replaced = this.matrixImage;
+			this.matrixImage = image;
+			// 旧图可能还没画出来就被替换了，它不会再被画，可以归还
+			if (releaseReplaced && replaced != null && replaced != image) {
+				replaced.release();
+			}
+		}
 		if (autoZoom && differentSize(image)) {
 			this.lastWidth = image.getWidth();
 			this.lastHeight = image.getHeight();
@@ -46,6 +63,14 @@ public class MatrixImagePanel extends JPanel {
 		repaint();
 	}
 
+	/**
+	 * 替换图片时归还旧图：图片借自帧缓冲池 {@link com.downgoon.video.image.FramePool} 时打开，
+	 * 调用方把图片交给画布后不再归还，由画布在确定不再绘制它时归还
+	 */
+	public void setReleaseReplaced(boolean releaseReplaced) {
+		this.releaseReplaced = releaseReplaced;
+	}
+
 	/**
 	 * get image associated with the panel
 	 */
@@ -71,9 +96,11 @@ public class MatrixImagePanel extends JPanel {
 	public void paintComponent(Graphics g) {
 		super.paintComponent(g);
 
-		if (matrixImage != null) {
-			// imageUpdate
-			g.drawImage(matrixImage.getBufferedImage(), 0, 0, this);
+		synchronized (imageLock) {
+			if (matrixImage != null) {
+				// imageUpdate
+				g.drawImage(matrixImage.getBufferedImage(), 0, 0, this);
+			}
 		}
 	}
 
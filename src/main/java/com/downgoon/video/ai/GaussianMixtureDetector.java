@@ -0,0 +1,275 @@
+package com.downgoon.video.ai;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.downgoon.video.image.ImageConvertor;
+import com.downgoon.video.image.LumaImage;
+import com.downgoon.video.image.MatrixImage;
+import com.downgoon.video.metrics.MotionMetrics;
+import com.downgoon.video.util.Rect;
+
+/**
+ * 混合高斯背景建模的运动检测引擎（精简版，只看亮度）
+ * <p>
+ * 每个像素的亮度用2到3个高斯分布（模式）来描述，每个模式有权重、均值、方差。新的一帧到来时：
+ * <ol>
+ * <li>像素亮度落在某个模式的2.5倍标准差以内，则该模式命中，其均值、方差向当前亮度靠拢，权重增加；</li>
+ * <li>都不命中，则用当前亮度替换权重最小的模式；</li>
+ * <li>按权重从大到小，累计权重达到背景比例的那几个模式视为背景，命中背景模式的像素是背景像素，否则是前景（运动）像素。</li>
+ * </ol>
+ * 前景像素按区块计数，超过半数为前景的区块是运动区块，再与 {@link VideoMotionDetector} 一样合并邻居区块。
+ * <p>
+ * 模式参数按"结构的数组"存放：权重、均值、方差各一个 float 数组，下标为 {@code 像素 * 模式数 + 模式}，
+ * 同一像素的几个模式相邻，每个像素的模式按权重从大到小排列。
+ * 比前后两帧对比能更好地容忍树叶晃动、水面反光这类重复出现的背景变化，代价是每像素多几次浮点运算。
+ *
+ * @author downgoon@qq.com
+ * @since 2026-10-17
+ */
+public class GaussianMixtureDetector implements MotionDetector {
+
+    /**
+     * 命中阈值：亮度与均值之差的平方小于 2.5^2 倍方差
+     */
+    private static final float MATCH_THRESHOLD = 2.5f * 2.5f;
+
+    /**
+     * 新模式的初始方差
+     */
+    private static final float INITIAL_VARIANCE = 15f * 15f;
+
+    /**
+     * 方差下限，避免长期静止的像素方差收缩到对噪声过于敏感
+     */
+    private static final float MIN_VARIANCE = 4f * 4f;
+
+    /**
+     * 区块粒度：将一张图片，切成很多个区块。每个区块大小为10像素*10像素。
+     */
+    private int blockSizeThreshold = 10;
+
+    /**
+     * 每个像素的模式数，2 或 3
+     */
+    private int modes = 3;
+
+    /**
+     * 学习率：每帧背景模型向当前画面靠拢的比例
+     */
+    private float learningRate = 0.01f;
+
+    /**
+     * 背景比例：按权重从大到小累计，达到该比例的模式视为背景
+     */
+    private float backgroundRatio = 0.7f;
+
+    private int width;
+
+    private int height;
+
+    private float[] weight;
+    private float[] mean;
+    private float[] variance;
+
+    private LumaImage lumaImage;
+
+    private MotionBlockGrid blockGrid;
+
+    /**
+     * 指标，为 null 时不计时
+     */
+    private volatile MotionMetrics metrics;
+
+    public GaussianMixtureDetector() {
+        this(10, 3, 0.01f);
+    }
+
+    /**
+     * @param blockSizeThreshold 区块粒度
+     * @param modes              每个像素的模式数，2 或 3
+     * @param learningRate       学习率，(0, 1)
+     */
+    public GaussianMixtureDetector(int blockSizeThreshold, int modes, float learningRate) {
+        if (modes < 2 || modes > 3) {
+            throw new IllegalArgumentException("modes must be 2 or 3: " + modes);
+        }
+        if (learningRate <= 0 || learningRate >= 1) {
+            throw new IllegalArgumentException("learning rate must be in (0, 1): " + learningRate);
+        }
+        this.blockSizeThreshold = blockSizeThreshold;
+        this.modes = modes;
+        this.learningRate = learningRate;
+    }
+
+    public void setBackgroundRatio(float backgroundRatio) {
+        this.backgroundRatio = backgroundRatio;
+    }
+
+    @Override
+    public int getBlockSizeThreshold() {
+        return blockSizeThreshold;
+    }
+
+    @Override
+    public int copyMotionBlocks(long[] bits) {
+        if (blockGrid == null) {
+            Arrays.fill(bits, 0L);
+            return 0;
+        }
+        return blockGrid.copyMotionBlocks(bits);
+    }
+
+    @Override
+    public void setMetrics(MotionMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public List<Rect> detect(MatrixImage frame) {
+        List<Rect> motionRects = new ArrayList<>();
+        detect(frame, MotionBlockGrid.copyInto(motionRects));
+        return motionRects;
+    }
+
+    @Override
+    public int detect(MatrixImage frame, RectSink out) {
+        if (blockGrid == null || !blockGrid.matches(frame.getWidth(), frame.getHeight())) {
+            initialize(frame);
+            return 0;
+        }
+
+        MotionMetrics m = metrics;
+        long beginNanos = m != null ? System.nanoTime() : 0L;
+
+        ImageConvertor.toLuma(frame, lumaImage);
+        blockGrid.reset();
+        updateAndCount(lumaImage.getLumaArray());
+        if (m == null) {
+            return blockGrid.judge(out);
+        }
+        long mergeNanos = System.nanoTime();
+        int regions = blockGrid.judge(out);
+        m.recordDetect(mergeNanos - beginNanos, System.nanoTime() - mergeNanos, regions);
+        return regions;
+    }
+
+    /**
+     * 用第一帧初始化：每个像素的第一个模式以当前亮度为均值、权重为1，其余模式权重为0
+     */
+    private void initialize(MatrixImage frame) {
+        width = frame.getWidth();
+        height = frame.getHeight();
+        lumaImage = new LumaImage(width, height);
+        blockGrid = new MotionBlockGrid(width, height, blockSizeThreshold);
+        weight = new float[width * height * modes];
+        mean = new float[width * height * modes];
+        variance = new float[width * height * modes];
+
+        ImageConvertor.toLuma(frame, lumaImage);
+        byte[] luma = lumaImage.getLumaArray();
+        for (int i = 0; i < width * height; i++) {
+            int base = i * modes;
+            weight[base] = 1f;
+            mean[base] = luma[i] & 0xFF;
+            for (int k = 0; k < modes; k++) {
+                variance[base + k] = INITIAL_VARIANCE;
+            }
+        }
+    }
+
+    /**
+     * 逐像素更新混合高斯模型，同时按区块统计前景像素。不足一个区块的边缘像素只更新模型，不参与统计。
+     */
+    private void updateAndCount(byte[] luma) {
+        int[] blockMotionCount = blockGrid.counts;
+        int blockWidth = blockGrid.blockWidth;
+        int countedWidth = blockWidth * blockSizeThreshold;
+        int countedHeight = blockGrid.blockHeight * blockSizeThreshold;
+
+        for (int y = 0; y < height; y++) {
+            int rowOffset = y * width;
+            int countRow = (y / blockSizeThreshold) * blockWidth;
+            for (int x = 0; x < width; x++) {
+                boolean foreground = updatePixel(rowOffset + x, luma[rowOffset + x] & 0xFF);
+                if (foreground && x < countedWidth && y < countedHeight) {
+                    blockMotionCount[countRow + x / blockSizeThreshold]++;
+                }
+            }
+        }
+    }
+
+    /**
+     * 更新一个像素的混合高斯模型
+     *
+     * @return 该像素是否为前景像素
+     */
+    private boolean updatePixel(int pixel, float value) {
+        int base = pixel * modes;
+        float alpha = learningRate;
+
+        // 按权重从大到小找第一个命中的模式，同时判断它是否属于背景模式
+        int matched = -1;
+        boolean background = false;
+        float cumulative = 0f;
+        for (int k = 0; k < modes; k++) {
+            int m = base + k;
+            float d = value - mean[m];
+            if (matched < 0 && d * d < MATCH_THRESHOLD * variance[m]) {
+                matched = k;
+                background = cumulative < backgroundRatio;
+            }
+            cumulative += weight[m];
+        }
+
+        // 更新权重：命中的模式增加，其余衰减
+        for (int k = 0; k < modes; k++) {
+            int m = base + k;
+            weight[m] += alpha * ((k == matched ? 1f : 0f) - weight[m]);
+        }
+
+        if (matched >= 0) {
+            int m = base + matched;
+            float rho = Math.min(1f, alpha / Math.max(weight[m], alpha));
+            float d = value - mean[m];
+            mean[m] += rho * d;
+            variance[m] = Math.max(MIN_VARIANCE, variance[m] + rho * (d * d - variance[m]));
+        } else {
+            // 都不命中：替换权重最小的模式（排在最后）
+            int m = base + modes - 1;
+            float total = 0f;
+            for (int k = 0; k < modes - 1; k++) {
+                total += weight[base + k];
+            }
+            weight[m] = alpha;
+            mean[m] = value;
+            variance[m] = INITIAL_VARIANCE;
+            // 归一化
+            float scale = (1f - alpha) / Math.max(total, Float.MIN_NORMAL);
+            for (int k = 0; k < modes - 1; k++) {
+                weight[base + k] *= scale;
+            }
+            matched = modes - 1;
+        }
+
+        // 命中的模式权重增加后，向前冒泡，保持按权重从大到小排列
+        for (int k = matched; k > 0 && weight[base + k] > weight[base + k - 1]; k--) {
+            swap(base + k, base + k - 1);
+        }
+        return !background;
+    }
+
+    private void swap(int a, int b) {
+        float w = weight[a];
+        weight[a] = weight[b];
+        weight[b] = w;
+        float u = mean[a];
+        mean[a] = mean[b];
+        mean[b] = u;
+        float v = variance[a];
+        variance[a] = variance[b];
+        variance[b] = v;
+    }
+
+}
@@ -0,0 +1,228 @@
+package com.downgoon.video.ai;
+
+import java.util.Arrays;
+import java.util.List;
+
+import com.downgoon.video.util.Rect;
+
+/**
+ * 区块矩阵：记录每个区块的运动像素个数，并把相邻的运动区块合并成运动区域。
+ * <p>
+ * 计数器和判决器都是按行优先存放的一维数组，下标为 {@code by * blockWidth + bx}，与逐行扫描像素的顺序一致。
+ * 合并出来的 {@link Rect} 来自一个复用池，预热之后每帧检测不再分配内存。
+ *
+ * @author downgoon@qq.com
+ * @since 2026-10-17
+ */
+class MotionBlockGrid {
+
+    /**
+     * 邻居距离：一个运动区块周围5个区块以内的运动区块，合并为同一个运动区域。
+     */
+    static final int NEIGHBOR_DISTANCE = 5;
+
+    final int blockSize;
+
+    final int blockWidth;
+
+    final int blockHeight;
+
+    private final int pixelWidth;
+
+    private final int pixelHeight;
+
+    /**
+     * 区块运动计数器：记录指定区块内，有多少个像素被判定为运动像素了。
+     */
+    final int[] counts;
+
+    /**
+     * 区块运动判决器：记录指定区块，是否已经被判定为运动区块了（1 是，0 否）。
+     */
+    final byte[] judge;
+
+    /**
+     * 合并邻居区块时使用的显式栈，保存待扩充的区块下标。
+     * 每个区块至多入栈一次，因此容量等于区块总数即可，不依赖线程栈深度。
+     */
+    private final int[] blockStack;
+
+    /**
+     * 如果区块内有超过半数是运动像素，则区块判别为"运动区块"
+     */
+    final int halfBlockPixels;
+
+    /**
+     * 运动区域复用池
+     */
+    private Rect[] rectPool = new Rect[16];
+
+    MotionBlockGrid(int pixelWidth, int pixelHeight, int blockSize) {
+        this.pixelWidth = pixelWidth;
+        this.pixelHeight = pixelHeight;
+        this.blockSize = blockSize;
+        this.blockWidth = pixelWidth / blockSize;
+        this.blockHeight = pixelHeight / blockSize;
+        this.counts = new int[blockWidth * blockHeight];
+        this.judge = new byte[blockWidth * blockHeight];
+        this.blockStack = new int[blockWidth * blockHeight];
+        this.halfBlockPixels = (blockSize * blockSize) / 2;
+    }
+
+    /**
+     * 区块矩阵是否适用于指定尺寸的图片
+     */
+    boolean matches(int pixelWidth, int pixelHeight) {
+        return this.pixelWidth == pixelWidth && this.pixelHeight == pixelHeight;
+    }
+
+    /**
+     * 清零计数器和判决器，准备下一帧
+     */
+    void reset() {
+        Arrays.fill(counts, 0);
+        Arrays.fill(judge, (byte) 0);
+    }
+
+    /**
+     * 清零计数器，并用掩码预置判决器：被屏蔽的区块视为已经标记过，合并时直接跳过
+     *
+     * @param masked 区块掩码，1 表示屏蔽
+     */
+    void reset(byte[] masked) {
+        Arrays.fill(counts, 0);
+        System.arraycopy(masked, 0, judge, 0, judge.length);
+    }
+
+    /**
+     * 判断一个区块是否是运动区块
+     */
+    boolean isMotionBlock(int index) {
+        return counts[index] > halfBlockPixels;
+    }
+
+    /**
+     * 把运动区块写成位图：第 i 个区块是运动区块时，bits 的第 i 位为1
+     *
+     * @return 运动区块的个数
+     */
+    int copyMotionBlocks(long[] bits) {
+        Arrays.fill(bits, 0L);
+        int motionBlocks = 0;
+        for (int i = 0; i < counts.length; i++) {
+            if (isMotionBlock(i)) {
+                bits[i >>> 6] |= 1L << i;
+                motionBlocks++;
+            }
+        }
+        return motionBlocks;
+    }
+
+    /**
+     * 查找并合并运动区块：从左往右，从上到下，一遍扫描整个区块矩阵。每遇到一个尚未标记的运动区块，
+     * 就以它为种子扩充到它的邻居区块，形成一个运动区域，并交给 out。
+     *
+     * @return 运动区域的个数
+     */
+    int judge(RectSink out) {
+        int rectCount = 0;
+        for (int bx = 0; bx < blockWidth; bx++) {
+            for (int by = 0; by < blockHeight; by++) {
+
+                int index = by * blockWidth + bx;
+                if (judge[index] == 0 && isMotionBlock(index)) {
+
+                    judge[index] = 1;
+
+                    // "运动区块"对应图片中像素矩形坐标: [(X1, Y1), (X2,Y2)]
+                    Rect pixelRect = pooledRect(rectCount++);
+                    pixelRect.setX1(bx * blockSize);
+                    pixelRect.setY1(by * blockSize);
+                    pixelRect.setX2(bx * blockSize + blockSize);
+                    pixelRect.setY2(by * blockSize + blockSize);
+
+                    // 每当标记一个"运动区块"，立即找出它的邻居区块也是运动的，但是尚未标记的
+                    mergeNeighborBlocks(index, pixelRect);
+                    out.accept(pixelRect);
+                }
+            }
+        }
+        return rectCount;
+    }
+
+    /**
+     * 合并周围5格近邻的运动区块。用显式栈代替递归，整个画面都在运动时也不会栈溢出。
+     */
+    private void mergeNeighborBlocks(int seedIndex, Rect pixelRect) {
+        int top = 0;
+        blockStack[top++] = seedIndex;
+
+        while (top > 0) {
+            int index = blockStack[--top];
+            int blockX = index % blockWidth;
+            int blockY = index / blockWidth;
+
+            // 邻居区块：某个指定区块周围5个区块
+            int nbx1 = Math.max(0, blockX - NEIGHBOR_DISTANCE);
+            int nbx2 = Math.min(blockWidth, blockX + NEIGHBOR_DISTANCE);
+            int nby1 = Math.max(0, blockY - NEIGHBOR_DISTANCE);
+            int nby2 = Math.min(blockHeight, blockY + NEIGHBOR_DISTANCE);
+
+            for (int nby = nby1; nby < nby2; nby++) {
+                for (int nbx = nbx1; nbx < nbx2; nbx++) {
+
+                    // 对于邻居区块是运动的，且尚未被标记的
+                    int neighbor = nby * blockWidth + nbx;
+                    if (judge[neighbor] == 0 && isMotionBlock(neighbor)) {
+
+                        // 跟邻居对比，左顶点往左靠
+                        if (nbx * blockSize < pixelRect.getX1()) {
+                            pixelRect.setX1(nbx * blockSize);
+                        }
+                        if (nby * blockSize < pixelRect.getY1()) {
+                            pixelRect.setY1(nby * blockSize);
+                        }
+
+                        // 跟邻居对比，右底点往右靠
+                        if (nbx * blockSize > pixelRect.getX2()) {
+                            pixelRect.setX2(nbx * blockSize);
+                        }
+                        if (nby * blockSize > pixelRect.getY2()) {
+                            pixelRect.setY2(nby * blockSize);
+                        }
+
+                        // 把"邻居区块"也标记为"运动区块"，稍后再扩充它的邻居
+                        judge[neighbor] = 1;
+                        blockStack[top++] = neighbor;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 把复用池中的 {@link Rect} 逐个复制到 motionRects
+     */
+    static RectSink copyInto(final List<Rect> motionRects) {
+        return new RectSink() {
+
+            @Override
+            public void accept(Rect rect) {
+                motionRects.add(new Rect(rect.getX1(), rect.getY1(), rect.getX2(), rect.getY2()));
+            }
+        };
+    }
+
+    private Rect pooledRect(int i) {
+        if (i == rectPool.length) {
+            rectPool = Arrays.copyOf(rectPool, rectPool.length * 2);
+        }
+        Rect rect = rectPool[i];
+        if (rect == null) {
+            rect = new Rect();
+            rectPool[i] = rect;
+        }
+        return rect;
+    }
+
+}
@@ -0,0 +1,58 @@
+package com.downgoon.video.ai;
+
+import java.util.List;
+
+import com.downgoon.video.image.MatrixImage;
+import com.downgoon.video.metrics.MotionMetrics;
+import com.downgoon.video.util.Rect;
+
+/**
+ * 运动检测引擎：逐帧输入视频画面，输出运动区域。
+ * <p>
+ * 对比的参考（上一帧、背景模型等）由引擎自己维护，调用方只需按时间顺序送入每一帧。
+ * 不同引擎的计算代价和准确度不同，可以按摄像头选用。
+ *
+ * @author downgoon@qq.com
+ * @since 2026-10-17
+ */
+public interface MotionDetector {
+
+    /**
+     * 检测一帧中的运动区域，并把这一帧纳入引擎的参考
+     *
+     * @param frame 当前帧。引擎不会持有它，调用方可在返回后复用。
+     * @return 运动区域，每个都是新的 {@link Rect}；第一帧没有参考，返回空列表
+     */
+    List<Rect> detect(MatrixImage frame);
+
+    /**
+     * 检测一帧中的运动区域，逐个交给 out，并把这一帧纳入引擎的参考
+     *
+     * @param frame 当前帧。引擎不会持有它，调用方可在返回后复用。
+     * @param out   运动区域接收器，收到的 {@link Rect} 会在下一次检测时被复用
+     * @return 运动区域的个数
+     */
+    int detect(MatrixImage frame, RectSink out);
+
+    /**
+     * 区块粒度：区块的边长（像素）
+     */
+    int getBlockSizeThreshold();
+
+    /**
+     * 最近一次检测的运动区块位图。区块按行优先编号，共 {@code (宽 / 区块粒度) * (高 / 区块粒度)} 个，
+     * 第 i 个区块是运动区块时 bits 的第 i 位（{@code bits[i / 64] 的第 i % 64 位}）为1。
+     *
+     * @param bits 至少 (区块数 + 63) / 64 个 long
+     * @return 运动区块的个数；尚未检测过时返回0，bits 全部清零
+     */
+    int copyMotionBlocks(long[] bits);
+
+    /**
+     * 接入指标：每帧记录像素统计和区块合并的耗时、运动区域个数
+     *
+     * @param metrics 为 null 时不记录
+     */
+    void setMetrics(MotionMetrics metrics);
+
+}
@@ -0,0 +1,117 @@
+package com.downgoon.video.ai;
+
+import com.downgoon.video.image.MatrixImage;
+import com.downgoon.video.util.Rect;
+
+/**
+ * 运动像素积分图（summed-area table）：每帧对比一次像素，之后任意矩形内的运动像素个数都能以 O(1) 查出。
+ * <p>
+ * 积分图中 (x, y) 处的值，是原图 [0, x) * [0, y) 范围内运动像素的个数。于是任意矩形
+ * [x1, x2) * [y1, y2) 内的运动像素个数为 I(x2,y2) - I(x1,y2) - I(x2,y1) + I(x1,y1)。
+ * <p>
+ * 同一帧的积分图可以交给多个不同区块粒度的 {@link VideoMotionDetector}，例如 8/16/32 像素同时检测，
+ * 也可以直接回答"某个矩形内有多少运动"这类查询，都不需要再次对比像素。
+ *
+ * @author downgoon@qq.com
+ * @since 2026-10-17
+ */
+public class MotionIntegralImage {
+
+    /**
+     * 色差阈值：相邻的两帧，在同一像素点位置，如果色差大于阈值，则判定为运动像素。
+     */
+    private int colorDiffThreshold = 30;
+
+    private int width;
+
+    private int height;
+
+    /**
+     * 积分图，(width + 1) * (height + 1)，第0行和第0列恒为0
+     */
+    private int[] table = new int[0];
+
+    public MotionIntegralImage() {
+        this(30);
+    }
+
+    public MotionIntegralImage(int colorDiffThreshold) {
+        this.colorDiffThreshold = colorDiffThreshold;
+    }
+
+    /**
+     * 对比两帧，构建运动像素积分图。图片尺寸不变时复用上一帧的积分图数组。
+     */
+    public void build(MatrixImage currImage, MatrixImage diffImage) {
+        int w = currImage.getWidth();
+        int h = currImage.getHeight();
+        int stride = w + 1;
+        if (w != width || h != height) {
+            table = new int[stride * (h + 1)];
+            width = w;
+            height = h;
+        }
+
+        int[] currRgb = currImage.getRgbArray();
+        int[] diffRgb = diffImage.getRgbArray();
+
+        for (int y = 0; y < h; y++) {
+            int rowSum = 0;
+            int pixel = y * w;
+            int above = y * stride + 1;
+            int here = above + stride;
+            for (int x = 0; x < w; x++) {
+                if (MotionPixels.isMotionPixel(currRgb[pixel + x], diffRgb[pixel + x], colorDiffThreshold)) {
+                    rowSum++;
+                }
+                table[here + x] = table[above + x] + rowSum;
+            }
+        }
+    }
+
+    /**
+     * 矩形 [x1, x2) * [y1, y2) 内的运动像素个数，超出图片的部分被裁掉
+     */
+    public int countMotion(int x1, int y1, int x2, int y2) {
+        x1 = clamp(x1, width);
+        x2 = clamp(x2, width);
+        y1 = clamp(y1, height);
+        y2 = clamp(y2, height);
+        if (x1 >= x2 || y1 >= y2) {
+            return 0;
+        }
+        int stride = width + 1;
+        return table[y2 * stride + x2] - table[y2 * stride + x1] - table[y1 * stride + x2] + table[y1 * stride + x1];
+    }
+
+    /**
+     * 矩形内的运动像素个数
+     */
+    public int countMotion(Rect rect) {
+        return countMotion(rect.getX1(), rect.getY1(), rect.getX2(), rect.getY2());
+    }
+
+    /**
+     * 整幅图片的运动像素个数
+     */
+    public int countMotion() {
+        return table.length == 0 ? 0 : table[table.length - 1];
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getColorDiffThreshold() {
+        return colorDiffThreshold;
+    }
+
+    private static int clamp(int v, int max) {
+        return v < 0 ? 0 : (v > max ? max : v);
+    }
+
+}
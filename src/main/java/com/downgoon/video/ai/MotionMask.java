@@ -0,0 +1,203 @@
+package com.downgoon.video.ai;
+
+import java.awt.Polygon;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 区块掩码：把关注区域（ROI）和排除区域的多边形光栅化成区块级的位图，供 {@link VideoMotionDetector} 跳过被屏蔽的区块。
+ * <p>
+ * 区块中心落在某个关注区域内（没有关注区域时视为整幅画面），且不落在任何排除区域内，该区块才参与检测。
+ * 被屏蔽的区块既不对比像素，也不参与运动区块的合并，而不是检测完再把 {@link com.downgoon.video.util.Rect} 过滤掉。
+ * <p>
+ * 多边形只在 {@link #apply()} 时光栅化一次。位图是双缓冲的：在后台缓冲区光栅化好，再一次性切换为当前位图，
+ * 检测线程每帧只读取一次当前位图，运行期间修改掩码不会重新分配内存，也不需要暂停检测。
+ *
+ * @author downgoon@qq.com
+ * @since 2026-10-17
+ */
+public class MotionMask {
+
+    private final int pixelWidth;
+
+    private final int pixelHeight;
+
+    final int blockSize;
+
+    private final int blockWidth;
+
+    private final int blockHeight;
+
+    /**
+     * 尚未光栅化的多边形，像素坐标
+     */
+    private final List<Polygon> regionsOfInterest = new ArrayList<>();
+
+    private final List<Polygon> exclusions = new ArrayList<>();
+
+    /**
+     * 两块位图轮流作为当前位图和后台缓冲区
+     */
+    private final Blocks[] buffers = new Blocks[2];
+
+    private volatile Blocks current;
+
+    /**
+     * @param pixelWidth  画面宽度
+     * @param pixelHeight 画面高度
+     * @param blockSize   区块粒度，必须与检测器一致
+     */
+    public MotionMask(int pixelWidth, int pixelHeight, int blockSize) {
+        if (pixelWidth < blockSize || pixelHeight < blockSize || blockSize < 1) {
+            throw new IllegalArgumentException("invalid mask size: " + pixelWidth + "x" + pixelHeight + "/" + blockSize);
+        }
+        this.pixelWidth = pixelWidth;
+        this.pixelHeight = pixelHeight;
+        this.blockSize = blockSize;
+        this.blockWidth = pixelWidth / blockSize;
+        this.blockHeight = pixelHeight / blockSize;
+        this.buffers[0] = new Blocks(blockWidth * blockHeight);
+        this.buffers[1] = new Blocks(blockWidth * blockHeight);
+
+        // 初始时所有区块都参与检测
+        rasterize(buffers[0]);
+        this.current = buffers[0];
+    }
+
+    /**
+     * 添加关注区域。{@link #apply()} 之后生效。
+     */
+    public synchronized void addRegionOfInterest(Polygon polygon) {
+        regionsOfInterest.add(copyOf(polygon));
+    }
+
+    public synchronized void addRegionOfInterest(int[] xpoints, int[] ypoints) {
+        addRegionOfInterest(new Polygon(xpoints, ypoints, Math.min(xpoints.length, ypoints.length)));
+    }
+
+    /**
+     * 添加排除区域，如树木、马路、时钟。{@link #apply()} 之后生效。
+     */
+    public synchronized void addExclusion(Polygon polygon) {
+        exclusions.add(copyOf(polygon));
+    }
+
+    public synchronized void addExclusion(int[] xpoints, int[] ypoints) {
+        addExclusion(new Polygon(xpoints, ypoints, Math.min(xpoints.length, ypoints.length)));
+    }
+
+    /**
+     * 清除所有多边形。{@link #apply()} 之后恢复为整幅画面参与检测。
+     */
+    public synchronized void clear() {
+        regionsOfInterest.clear();
+        exclusions.clear();
+    }
+
+    /**
+     * 把当前的多边形光栅化到后台缓冲区，再切换为当前位图。
+     * <p>
+     * 检测线程可能仍在读取上一块当前位图；如果在一帧之内连续 apply 两次，这一帧会看到新旧混合的位图，
+     * 但每个区块的取值都是有效的，下一帧即恢复一致。
+     */
+    public synchronized void apply() {
+        Blocks back = current == buffers[0] ? buffers[1] : buffers[0];
+        rasterize(back);
+        current = back;
+    }
+
+    /**
+     * 当前参与检测的区块个数
+     */
+    public int getActiveBlocks() {
+        return current.activeBlocks;
+    }
+
+    public int getBlockCount() {
+        return blockWidth * blockHeight;
+    }
+
+    public int getPixelWidth() {
+        return pixelWidth;
+    }
+
+    public int getPixelHeight() {
+        return pixelHeight;
+    }
+
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    /**
+     * 掩码是否适用于指定尺寸的图片
+     */
+    boolean matches(int pixelWidth, int pixelHeight) {
+        return this.pixelWidth == pixelWidth && this.pixelHeight == pixelHeight;
+    }
+
+    /**
+     * 当前位图。检测时每帧读取一次，整帧使用同一块位图。
+     */
+    Blocks current() {
+        return current;
+    }
+
+    private void rasterize(Blocks blocks) {
+        int active = 0;
+        double half = blockSize / 2.0;
+        for (int by = 0; by < blockHeight; by++) {
+            double centerY = by * blockSize + half;
+            for (int bx = 0; bx < blockWidth; bx++) {
+                double centerX = bx * blockSize + half;
+                boolean enabled = (regionsOfInterest.isEmpty() || containsAny(regionsOfInterest, centerX, centerY))
+                        && !containsAny(exclusions, centerX, centerY);
+
+                int index = by * blockWidth + bx;
+                blocks.gate[index] = (byte) (enabled ? 1 : 0);
+                blocks.masked[index] = (byte) (enabled ? 0 : 1);
+                if (enabled) {
+                    active++;
+                }
+            }
+        }
+        blocks.activeBlocks = active;
+    }
+
+    private static boolean containsAny(List<Polygon> polygons, double x, double y) {
+        for (Polygon polygon : polygons) {
+            if (polygon.contains(x, y)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Polygon copyOf(Polygon polygon) {
+        return new Polygon(polygon.xpoints, polygon.ypoints, polygon.npoints);
+    }
+
+    /**
+     * 区块位图，与 {@link MotionBlockGrid} 一样按行优先存放
+     */
+    static final class Blocks {
+
+        /**
+         * 区块闸门：1 参与检测，0 屏蔽
+         */
+        final byte[] gate;
+
+        /**
+         * 闸门取反，用来预置区块运动判决器，合并时被屏蔽的区块视为已经标记过
+         */
+        final byte[] masked;
+
+        volatile int activeBlocks;
+
+        Blocks(int blocks) {
+            this.gate = new byte[blocks];
+            this.masked = new byte[blocks];
+        }
+    }
+
+}
@@ -0,0 +1,110 @@
+package com.downgoon.video.ai;
+
+import java.lang.reflect.Constructor;
+
+/**
+ * 运动像素统计内核：统计一段连续像素中运动像素的个数，是逐像素对比中最热的循环。
+ * <p>
+ * 默认使用标量实现；运行在 JDK 17 及以上、并以 {@code --add-modules jdk.incubator.vector} 启动时，
+ * 自动改用多版本 JAR（META-INF/versions/17）中基于 Vector API 的 SIMD 实现。
+ * 两种实现的统计结果完全一致。可用 {@code -Dmotion.kernel=scalar} 强制使用标量实现。
+ *
+ * @author downgoon@qq.com
+ * @since 2026-10-17
+ */
+abstract class MotionPixelKernel {
+
+    private static final String VECTOR_KERNEL = "com.downgoon.video.ai.VectorMotionPixelKernel";
+
+    private static final MotionPixelKernel SCALAR = new ScalarKernel();
+
+    private static final MotionPixelKernel BEST = select();
+
+    /**
+     * 统计 [from, to) 内的运动像素：RGB任一通道的色差大于色差阈值
+     *
+     * @param currRgb   当前图的 ARGB 数组
+     * @param diffRgb   对比图的 ARGB 数组
+     * @param threshold 色差阈值
+     * @return 运动像素个数
+     */
+    abstract int countMotionPixels(int[] currRgb, int[] diffRgb, int from, int to, int threshold);
+
+    abstract String name();
+
+    /**
+     * 一次对比的像素个数，标量实现为1
+     */
+    abstract int lanes();
+
+    static MotionPixelKernel scalar() {
+        return SCALAR;
+    }
+
+    /**
+     * 当前运行环境下最快的内核
+     */
+    static MotionPixelKernel best() {
+        return BEST;
+    }
+
+    private static MotionPixelKernel select() {
+        if ("scalar".equals(System.getProperty("motion.kernel"))) {
+            return SCALAR;
+        }
+        MotionPixelKernel kernel = vector();
+        return kernel != null ? kernel : SCALAR;
+    }
+
+    /**
+     * 加载 Vector API 实现
+     *
+     * @return JDK 17 以下，或者没有加入 jdk.incubator.vector 模块时为 null
+     */
+    static MotionPixelKernel vector() {
+        try {
+            Constructor<?> constructor = Class.forName(VECTOR_KERNEL).getDeclaredConstructor();
+            constructor.setAccessible(true);
+            MotionPixelKernel kernel = (MotionPixelKernel) constructor.newInstance();
+            // 加载成功也要确认能跑通：jdk.incubator.vector 模块没有加入时，这里才会失败
+            int[] probe = new int[]{0xFF000000, 0xFFFFFFFF, 0xFF808080};
+            if (kernel.countMotionPixels(probe, new int[3], 0, 3, 30) == 2) {
+                return kernel;
+            }
+        } catch (ReflectiveOperationException e) {
+            // JDK 17 以下，多版本 JAR 中的实现不可见
+        } catch (LinkageError e) {
+            // 没有加入 jdk.incubator.vector 模块
+        }
+        return null;
+    }
+
+    /**
+     * 标量实现
+     */
+    private static final class ScalarKernel extends MotionPixelKernel {
+
+        @Override
+        int countMotionPixels(int[] currRgb, int[] diffRgb, int from, int to, int threshold) {
+            int motion = 0;
+            for (int i = from; i < to; i++) {
+                // 两个点在RGB的任一通道色差大于色差阈值，则判定为"运动像素"
+                if (MotionPixels.isMotionPixel(currRgb[i], diffRgb[i], threshold)) {
+                    motion++;
+                }
+            }
+            return motion;
+        }
+
+        @Override
+        String name() {
+            return "scalar";
+        }
+
+        @Override
+        int lanes() {
+            return 1;
+        }
+    }
+
+}
@@ -0,0 +1,26 @@
+package com.downgoon.video.ai;
+
+/**
+ * 运动像素判定：相邻的两帧，在同一像素点位置，RGB任一通道的色差大于色差阈值，则判定为运动像素。
+ *
+ * @author downgoon@qq.com
+ * @since 2026-10-17
+ */
+final class MotionPixels {
+
+    private MotionPixels() {
+    }
+
+    /**
+     * @param c                  当前图在某点的 ARGB 值
+     * @param d                  对比图在相同点的 ARGB 值
+     * @param colorDiffThreshold 色差阈值
+     * @return 是否为运动像素
+     */
+    static boolean isMotionPixel(int c, int d, int colorDiffThreshold) {
+        return Math.abs(((c >>> 16) & 0xFF) - ((d >>> 16) & 0xFF)) > colorDiffThreshold
+                || Math.abs(((c >>> 8) & 0xFF) - ((d >>> 8) & 0xFF)) > colorDiffThreshold
+                || Math.abs((c & 0xFF) - (d & 0xFF)) > colorDiffThreshold;
+    }
+
+}
@@ -0,0 +1,22 @@
+package com.downgoon.video.ai;
+
+import com.downgoon.video.util.Rect;
+
+/**
+ * 运动区域接收器：检测器每合并出一个运动区域，就回调一次 {@link #accept(Rect)}。
+ * <p>
+ * 回调的 {@link Rect} 来自检测器内部的复用池，只在下一次检测之前有效；需要长期保留时请自行复制。
+ *
+ * @author downgoon@qq.com
+ * @since 2026-10-17
+ */
+public interface RectSink {
+
+    /**
+     * 接收一个运动区域
+     *
+     * @param rect 运动区域对应的像素矩形，下一次检测时会被复用
+     */
+    void accept(Rect rect);
+
+}
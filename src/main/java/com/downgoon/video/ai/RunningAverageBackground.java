@@ -0,0 +1,141 @@
+package com.downgoon.video.ai;
+
+import com.downgoon.video.image.MatrixImage;
+
+/**
+ * 自适应背景模型：逐像素、逐通道的指数滑动平均，代替"上一帧"作为运动检测的对比图。
+ * <p>
+ * 与前后两帧对比相比，慢速移动的物体会逐渐偏离背景而被检出，压缩噪声造成的闪烁则被平均掉。
+ * 每帧的更新公式为 {@code bg = bg + (frame - bg) * learningRate}，背景值以16位小数的定点整数保存在基本类型数组中，
+ * 更新过程没有浮点运算，也不分配内存。
+ * <p>
+ * 典型用法：先用背景图检测，再把当前帧学习进背景。
+ *
+ * <pre>
+ * detector.detect(currFrame, background.getBackground());
+ * background.update(currFrame);
+ * </pre>
+ *
+ * @author downgoon@qq.com
+ * @since 2026-10-17
+ */
+public class RunningAverageBackground {
+
+    /**
+     * 定点小数位数
+     */
+    private static final int FRACTION_BITS = 16;
+
+    private static final int ROUNDING = 1 << (FRACTION_BITS - 1);
+
+    /**
+     * 学习率的定点表示：learningRate * 2^16
+     */
+    private int fixedLearningRate;
+
+    private int width;
+
+    private int height;
+
+    /**
+     * 三个通道的背景值，定点整数，按像素行优先存放
+     */
+    private int[] redAverage;
+    private int[] greenAverage;
+    private int[] blueAverage;
+
+    /**
+     * 背景图：每次更新后，由定点背景值四舍五入得到，供 {@link VideoMotionDetector#detect} 作对比图
+     */
+    private MatrixImage backgroundImage;
+
+    public RunningAverageBackground() {
+        this(0.05);
+    }
+
+    /**
+     * @param learningRate 学习率，(0, 1]。越大背景跟随画面越快，越小越能检出慢速移动的物体。
+     */
+    public RunningAverageBackground(double learningRate) {
+        setLearningRate(learningRate);
+    }
+
+    public void setLearningRate(double learningRate) {
+        if (learningRate <= 0 || learningRate > 1) {
+            throw new IllegalArgumentException("learning rate must be in (0, 1]: " + learningRate);
+        }
+        this.fixedLearningRate = Math.max(1, (int) Math.round(learningRate * (1 << FRACTION_BITS)));
+    }
+
+    public double getLearningRate() {
+        return fixedLearningRate / (double) (1 << FRACTION_BITS);
+    }
+
+    /**
+     * 把一帧学习进背景。第一帧（或尺寸变化后的第一帧）直接作为背景。
+     */
+    public void update(MatrixImage frame) {
+        int[] rgbArray = frame.getRgbArray();
+        if (backgroundImage == null || frame.getWidth() != width || frame.getHeight() != height) {
+            reset(frame);
+            return;
+        }
+
+        int[] background = backgroundImage.getRgbArray();
+        long rate = fixedLearningRate;
+        for (int i = 0; i < width * height; i++) {
+            int rgb = rgbArray[i];
+
+            int red = redAverage[i];
+            red += (int) ((((long) ((rgb >>> 16) & 0xFF) << FRACTION_BITS) - red) * rate >> FRACTION_BITS);
+            redAverage[i] = red;
+
+            int green = greenAverage[i];
+            green += (int) ((((long) ((rgb >>> 8) & 0xFF) << FRACTION_BITS) - green) * rate >> FRACTION_BITS);
+            greenAverage[i] = green;
+
+            int blue = blueAverage[i];
+            blue += (int) ((((long) (rgb & 0xFF) << FRACTION_BITS) - blue) * rate >> FRACTION_BITS);
+            blueAverage[i] = blue;
+
+            background[i] = 0xFF000000 | (((red + ROUNDING) >>> FRACTION_BITS) << 16)
+                    | (((green + ROUNDING) >>> FRACTION_BITS) << 8) | ((blue + ROUNDING) >>> FRACTION_BITS);
+        }
+    }
+
+    /**
+     * 以指定帧重置背景
+     */
+    public void reset(MatrixImage frame) {
+        if (backgroundImage == null || frame.getWidth() != width || frame.getHeight() != height) {
+            width = frame.getWidth();
+            height = frame.getHeight();
+            redAverage = new int[width * height];
+            greenAverage = new int[width * height];
+            blueAverage = new int[width * height];
+            backgroundImage = new MatrixImage(width, height);
+        }
+
+        int[] rgbArray = frame.getRgbArray();
+        int[] background = backgroundImage.getRgbArray();
+        for (int i = 0; i < width * height; i++) {
+            int rgb = rgbArray[i];
+            redAverage[i] = ((rgb >>> 16) & 0xFF) << FRACTION_BITS;
+            greenAverage[i] = ((rgb >>> 8) & 0xFF) << FRACTION_BITS;
+            blueAverage[i] = (rgb & 0xFF) << FRACTION_BITS;
+            background[i] = 0xFF000000 | (rgb & 0x00FFFFFF);
+        }
+    }
+
+    /**
+     * 当前背景图，尚未学习任何帧时返回 null。返回的对象在后续更新中原地修改。
+     */
+    public MatrixImage getBackground() {
+        return backgroundImage;
+    }
+
+    public boolean isInitialized() {
+        return backgroundImage != null;
+    }
+
+}
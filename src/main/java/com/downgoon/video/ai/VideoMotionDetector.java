@@ -1,18 +1,30 @@
 package com.downgoon.video.ai;
 
+import java.nio.IntBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import com.downgoon.video.image.DirectMatrixImage;
+import com.downgoon.video.image.LumaImage;
 import com.downgoon.video.image.MatrixImage;
+import com.downgoon.video.metrics.MotionMetrics;
 import com.downgoon.video.util.Rect;
 
 /**
- * 一个朴素的视频运动检测算法
+ * 一个朴素的视频运动检测算法：对比两帧的每个像素，按区块统计运动像素，再合并相邻的运动区块。
+ * <p>
+ * 作为 {@link MotionDetector} 逐帧使用时，对比图是上一帧；设置了 {@link RunningAverageBackground} 时，对比图是背景图。
  *
  * @author downgoon@qq.com
  * @since 2016-06-09
  */
-public class VideoMotionDetector {
+public class VideoMotionDetector implements MotionDetector {
 
     /**
      * 区块粒度：将一张图片，切成很多个区块。每个区块大小为10像素*10像素。
@@ -25,188 +37,683 @@ public class VideoMotionDetector {
     private int colorDiffThreshold = 30;
 
 
+    /**
+     * 运动像素统计内核：运行环境支持 Vector API 时用 SIMD 实现，否则用标量实现
+     */
+    private final MotionPixelKernel pixelKernel = MotionPixelKernel.best();
+
+    /**
+     * 并行度：将图片按区块行切成若干水平条带，每个条带由一个线程统计运动像素。1 表示串行。
+     */
+    private int parallelism = 1;
+
+    /**
+     * 执行条带统计的线程池。串行模式下为 null。
+     */
+    private ExecutorService bandExecutor;
+
+    /**
+     * 线程池是否由本检测器创建（创建者负责关闭）
+     */
+    private boolean ownBandExecutor;
+
+    /**
+     * 预先划分好的条带任务，在第一次检测时按图片尺寸创建，之后每帧复用。
+     */
+    private List<BandCountTask> bandTasks;
+
+    /**
+     * 当前正在统计的两帧，RGB 模式、亮度模式和堆外模式三选一
+     */
+    private MatrixImage bandCurrImage;
+    private MatrixImage bandDiffImage;
+    private LumaImage bandCurrLuma;
+    private LumaImage bandDiffLuma;
+    private DirectMatrixImage bandCurrDirect;
+    private DirectMatrixImage bandDiffDirect;
+
+    /**
+     * 区块闸门：非 null 时，只统计闸门值不为0的区块，其余区块的运动像素计数保持为0
+     */
+    private byte[] bandGate;
+
+    /**
+     * 提前结束：按区块逐个统计，一旦能判定区块是否为运动区块就不再统计它剩下的像素
+     */
+    private boolean earlyExit = false;
+
+    /**
+     * 抽样步长：大于1时，按区块统计时每隔 samplingStride 个像素对比一个，以抽样结果估计区块的运动像素个数
+     */
+    private int samplingStride = 1;
+
     public VideoMotionDetector() {
         this(10, 30);
     }
 
     public VideoMotionDetector(int blockSizeThreshold, int colorDiffThreshold) {
+        this(blockSizeThreshold, colorDiffThreshold, 1);
+    }
+
+    /**
+     * @param parallelism 并行度。大于1时，在一个专属的 {@link ForkJoinPool} 上按条带并行统计运动像素。
+     */
+    public VideoMotionDetector(int blockSizeThreshold, int colorDiffThreshold, int parallelism) {
         super();
         this.blockSizeThreshold = blockSizeThreshold;
         this.colorDiffThreshold = colorDiffThreshold;
+        this.parallelism = Math.max(1, parallelism);
+        if (this.parallelism > 1) {
+            this.bandExecutor = new ForkJoinPool(this.parallelism);
+            this.ownBandExecutor = true;
+        }
     }
 
     /**
-     * 区块运动计数器：记录指定区块内，有多少个像素被判定为运动像素了。
+     * @param bandExecutor 调用方提供的线程池，条带统计任务提交到该线程池执行。检测器不会关闭它。
+     * @param parallelism  条带个数
      */
-    private int[][] blockMotionCount;
+    public VideoMotionDetector(int blockSizeThreshold, int colorDiffThreshold, ExecutorService bandExecutor,
+                               int parallelism) {
+        super();
+        this.blockSizeThreshold = blockSizeThreshold;
+        this.colorDiffThreshold = colorDiffThreshold;
+        this.parallelism = Math.max(1, parallelism);
+        this.bandExecutor = bandExecutor;
+        this.ownBandExecutor = false;
+    }
+
+    @Override
+    public int getBlockSizeThreshold() {
+        return blockSizeThreshold;
+    }
+
+    public int getColorDiffThreshold() {
+        return colorDiffThreshold;
+    }
 
     /**
-     * 区块运动判决器：记录指定区块，是否已经被判定为运动区块了。
+     * 开启提前结束：改为按区块逐个统计（RGB模式）。区块内的运动像素已超过半数，或剩下的像素全是运动像素也不可能超过半数时，
+     * 立即停止统计这个区块。运动区块的判定结果不变，但区块运动计数器只统计到能下结论为止。
+     * 画面静止时每个区块统计过半即可结束，画面运动剧烈时结束得更早。
      */
-    private boolean[][] blockMotionJudge;
+    public void setEarlyExit(boolean earlyExit) {
+        this.earlyExit = earlyExit;
+    }
 
-    private int pixelWidth;
-    private int pixelHeight;
+    public boolean isEarlyExit() {
+        return earlyExit;
+    }
 
-    private boolean initialized = false;
+    /**
+     * 设置抽样步长：大于1时改为按区块逐个统计（RGB模式），区块内每隔 samplingStride 个像素对比一个，
+     * 运动像素个数按抽样比例放大作为估计值。这是统计意义上的近似，步长越大越快，对细小运动越不敏感。
+     *
+     * @param samplingStride 抽样步长，1 表示逐像素对比
+     */
+    public void setSamplingStride(int samplingStride) {
+        if (samplingStride < 1) {
+            throw new IllegalArgumentException("sampling stride must be positive: " + samplingStride);
+        }
+        this.samplingStride = samplingStride;
+    }
 
-    public List<Rect> detect(MatrixImage currImage, MatrixImage diffImage) {
+    public int getSamplingStride() {
+        return samplingStride;
+    }
 
-        pixelWidth = currImage.getWidth();
-        pixelHeight = currImage.getHeight();
+    /**
+     * 运动像素统计内核的名称，如 scalar、vector-256
+     */
+    public String getPixelKernelName() {
+        return pixelKernel.name();
+    }
 
-        if (!initialized) {
-            // 划分区块：将一张图片，按照设定的区块大小，切分成若干个区块，并统计各个区块的运动像素
-            blockMotionCount = new int[pixelWidth / blockSizeThreshold][pixelHeight / blockSizeThreshold];
-            blockMotionJudge = new boolean[pixelWidth / blockSizeThreshold][pixelHeight / blockSizeThreshold];
-            initialized = true;
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * 释放检测器自己创建的线程池；调用方提供的线程池由调用方自行关闭。
+     */
+    public void shutdown() {
+        if (ownBandExecutor && bandExecutor != null) {
+            bandExecutor.shutdown();
         }
+    }
 
-        // 初始化 blockMotionCount 和 blockMotionJudge 两个矩阵
-        resetBlockMotionMatrix();
+    /**
+     * 区块矩阵：区块运动计数器、区块运动判决器，以及邻居区块合并
+     */
+    private MotionBlockGrid blockGrid;
 
-        // 计算每个Block区块的运动像素个数，并将结果保存到 blockMotionCount 矩阵
-        doBlockMotionCount(currImage, diffImage);
+    /**
+     * 逐帧检测时保存的上一帧副本
+     */
+    private MatrixImage lastFrame;
 
+    /**
+     * 逐帧检测时的背景模型，设置后代替上一帧作为对比图
+     */
+    private RunningAverageBackground referenceModel;
 
-        // 找出所有的运动区块，并登记为 Rect
-        List<Rect> motionRects = new ArrayList<>();
-        Rect rect = doBlockMotionJudge();
-        while (rect != null) {
-            motionRects.add(rect);
-            // 每次发现一个新的运动区块及其周围邻居
-            rect = doBlockMotionJudge();
-        }
-        return motionRects;
+    /**
+     * 指标，为 null 时不计时
+     */
+    private volatile MotionMetrics metrics;
+
+    /**
+     * 区块掩码，为 null 时检测整幅画面
+     */
+    private volatile MotionMask mask;
+
+    public void setReferenceModel(RunningAverageBackground referenceModel) {
+        this.referenceModel = referenceModel;
     }
 
-    private void doBlockMotionCount(MatrixImage currImage, MatrixImage diffImage) {
-        for (int y = 0; y < currImage.getHeight(); y++) {
-            for (int x = 0; x < currImage.getWidth(); x++) {
+    public RunningAverageBackground getReferenceModel() {
+        return referenceModel;
+    }
 
-                // 当前图在(x,y)点的RGB值
-                int cR = currImage.rgbR(x, y);
-                int cG = currImage.rgbG(x, y);
-                int cB = currImage.rgbB(x, y);
+    @Override
+    public int copyMotionBlocks(long[] bits) {
+        if (blockGrid == null) {
+            Arrays.fill(bits, 0L);
+            return 0;
+        }
+        return blockGrid.copyMotionBlocks(bits);
+    }
 
-                // 对比图在相同点的RGB值
-                int dR = diffImage.rgbR(x, y);
-                int dG = diffImage.rgbG(x, y);
-                int dB = diffImage.rgbB(x, y);
+    @Override
+    public void setMetrics(MotionMetrics metrics) {
+        this.metrics = metrics;
+    }
 
-                // 两个点在RGB的任一通道色差大于色差阈值，则判定为"运动像素"
-                if (Math.abs(cR - dR) > colorDiffThreshold
-                        || Math.abs(cG - dG) > colorDiffThreshold
-                        || Math.abs(cB - dB) > colorDiffThreshold) {
+    /**
+     * 设置区块掩码：被屏蔽的区块不对比像素，也不参与合并。掩码可在检测过程中随时 {@link MotionMask#apply()} 更新。
+     *
+     * @param mask 区块粒度必须与检测器一致；为 null 时检测整幅画面
+     */
+    public void setMask(MotionMask mask) {
+        if (mask != null && mask.blockSize != blockSizeThreshold) {
+            throw new IllegalArgumentException("mask block size " + mask.blockSize + " does not match detector block size "
+                    + blockSizeThreshold);
+        }
+        this.mask = mask;
+    }
 
-                    // 区块内"运动像素"计数器累加1
-                    int blockX = x / blockSizeThreshold;
-                    int blockY = y / blockSizeThreshold;
-                    blockMotionCount[blockX][blockY]++;
-                }
+    public MotionMask getMask() {
+        return mask;
+    }
 
+    @Override
+    public List<Rect> detect(MatrixImage frame) {
+        List<Rect> motionRects = new ArrayList<>();
+        detect(frame, MotionBlockGrid.copyInto(motionRects));
+        return motionRects;
+    }
+
+    /**
+     * 逐帧检测：与上一帧（或背景图）对比，然后把这一帧记为下一帧的对比图
+     */
+    @Override
+    public int detect(MatrixImage frame, RectSink out) {
+        int regions = 0;
+        if (referenceModel != null) {
+            if (referenceModel.isInitialized()) {
+                regions = detect(frame, referenceModel.getBackground(), out);
             }
+            referenceModel.update(frame);
+            return regions;
+        }
+
+        boolean sameSize = lastFrame != null && lastFrame.getWidth() == frame.getWidth()
+                && lastFrame.getHeight() == frame.getHeight();
+        if (sameSize) {
+            regions = detect(frame, lastFrame, out);
+        } else {
+            lastFrame = new MatrixImage(frame.getWidth(), frame.getHeight());
         }
+        MatrixImage.copyRgbArray(frame, lastFrame);
+        return regions;
     }
 
     /**
-     * 查找并合并运动区块： 从左往右，从上到下，找到第一个运动区块，并扩充到它的邻居区块。
+     * 检测运动区域，每个运动区域都是一个新的 {@link Rect}
+     */
+    public List<Rect> detect(MatrixImage currImage, MatrixImage diffImage) {
+        List<Rect> motionRects = new ArrayList<>();
+        detect(currImage, diffImage, MotionBlockGrid.copyInto(motionRects));
+        return motionRects;
+    }
+
+    /**
+     * 检测运动区域，并逐个交给 out。区块矩阵和 {@link Rect} 都是复用的，图片尺寸不变时，串行模式下每帧检测不分配内存。
      *
-     * @return 只要找到任何运动区块，都返回True；否则，返回False
+     * @return 运动区域的个数
      */
-    private Rect doBlockMotionJudge() {
-        int blockWidth = pixelWidth / blockSizeThreshold;
-        int blockHeight = pixelHeight / blockSizeThreshold;
+    public int detect(MatrixImage currImage, MatrixImage diffImage, RectSink out) {
+        long beginNanos = metrics != null ? System.nanoTime() : 0L;
 
-        Rect pixelRect = null;
-        for (int bx = 0; bx < blockWidth; bx++) {
-            for (int by = 0; by < blockHeight; by++) {
+        byte[] maskGate = prepareBlockGrid(currImage.getWidth(), currImage.getHeight());
 
-                if (!blockMotionJudge[bx][by] && isMotionBlock(bx, by)) {
+        // 计算每个Block区块的运动像素个数，并将结果保存到区块运动计数器；被屏蔽的区块跳过
+        doBlockMotionCount(currImage, diffImage, maskGate);
 
-                    blockMotionJudge[bx][by] = true;
+        // 找出所有的运动区块，并登记为 Rect
+        return judgeBlocks(out, beginNanos);
+    }
 
-                    if (pixelRect == null) {
-                        // "运动区块"对应图片中像素矩形坐标: [(X1, Y1), (X2,Y2)]
-                        pixelRect = new Rect(bx * blockSizeThreshold,
-                                by * blockSizeThreshold,
-                                bx * blockSizeThreshold + blockSizeThreshold,
-                                by * blockSizeThreshold + blockSizeThreshold
-                        );
-                    }
+    /**
+     * 亮度模式：只对比亮度一个通道，亮度差大于色差阈值即为运动像素。比 RGB 模式少用四分之三的内存和大部分计算，
+     * 需要区分色度的场景仍请使用 {@link #detect(MatrixImage, MatrixImage)}。
+     */
+    public List<Rect> detect(LumaImage currLuma, LumaImage diffLuma) {
+        List<Rect> motionRects = new ArrayList<>();
+        detect(currLuma, diffLuma, MotionBlockGrid.copyInto(motionRects));
+        return motionRects;
+    }
+
+    /**
+     * 亮度模式检测运动区域，并逐个交给 out
+     *
+     * @return 运动区域的个数
+     */
+    public int detect(LumaImage currLuma, LumaImage diffLuma, RectSink out) {
+        long beginNanos = metrics != null ? System.nanoTime() : 0L;
+
+        byte[] maskGate = prepareBlockGrid(currLuma.getWidth(), currLuma.getHeight());
+
+        doBlockMotionCount(currLuma, diffLuma, maskGate);
+
+        return judgeBlocks(out, beginNanos);
+    }
+
+    /**
+     * 堆外模式：直接在 {@link DirectMatrixImage} 的本地内存上对比像素，不复制到堆上。
+     * 运动像素的判定与 RGB 模式相同，逐像素对比，不支持提前结束和抽样。
+     */
+    public List<Rect> detect(DirectMatrixImage currImage, DirectMatrixImage diffImage) {
+        List<Rect> motionRects = new ArrayList<>();
+        detect(currImage, diffImage, MotionBlockGrid.copyInto(motionRects));
+        return motionRects;
+    }
+
+    /**
+     * 堆外模式检测运动区域，并逐个交给 out
+     *
+     * @return 运动区域的个数
+     */
+    public int detect(DirectMatrixImage currImage, DirectMatrixImage diffImage, RectSink out) {
+        long beginNanos = metrics != null ? System.nanoTime() : 0L;
+
+        byte[] maskGate = prepareBlockGrid(currImage.getWidth(), currImage.getHeight());
+
+        bandCurrDirect = currImage;
+        bandDiffDirect = diffImage;
+        bandGate = maskGate;
+        try {
+            countBands();
+        } finally {
+            bandCurrDirect = null;
+            bandDiffDirect = null;
+            bandGate = null;
+        }
+
+        return judgeBlocks(out, beginNanos);
+    }
+
+    /**
+     * 基于运动像素积分图检测运动区域：每个区块的运动像素个数直接从积分图查出，不再对比像素。
+     * 运动像素按积分图自己的色差阈值判定。
+     */
+    public List<Rect> detect(MotionIntegralImage integralImage) {
+        List<Rect> motionRects = new ArrayList<>();
+        detect(integralImage, MotionBlockGrid.copyInto(motionRects));
+        return motionRects;
+    }
 
-                    // 每当标记一个"运动区块"，立即找出它的邻居区块也是运动的，但是尚未标记的
-                    mergeNeighborBlocks(bx, by, pixelRect);
-                    return pixelRect;
+    /**
+     * 基于运动像素积分图检测运动区域，并逐个交给 out
+     *
+     * @return 运动区域的个数
+     */
+    public int detect(MotionIntegralImage integralImage, RectSink out) {
+        long beginNanos = metrics != null ? System.nanoTime() : 0L;
+
+        byte[] maskGate = prepareBlockGrid(integralImage.getWidth(), integralImage.getHeight());
+
+        // 每个区块的运动像素个数，都是积分图上的一次 O(1) 查询
+        int[] blockMotionCount = blockGrid.counts;
+        for (int by = 0; by < blockGrid.blockHeight; by++) {
+            int y1 = by * blockSizeThreshold;
+            for (int bx = 0; bx < blockGrid.blockWidth; bx++) {
+                if (maskGate != null && maskGate[by * blockGrid.blockWidth + bx] == 0) {
+                    continue;
                 }
+                int x1 = bx * blockSizeThreshold;
+                blockMotionCount[by * blockGrid.blockWidth + bx] = integralImage.countMotion(x1, y1,
+                        x1 + blockSizeThreshold, y1 + blockSizeThreshold);
             }
         }
 
-        // NO MORE MOTION BLOCK
-        return null;
+        return judgeBlocks(out, beginNanos);
     }
 
+    /**
+     * 合并运动区块；接入了指标时，记录从 beginNanos 到合并前的像素统计耗时，以及合并耗时
+     */
+    private int judgeBlocks(RectSink out, long beginNanos) {
+        MotionMetrics m = metrics;
+        if (m == null) {
+            return blockGrid.judge(out);
+        }
+        long mergeNanos = System.nanoTime();
+        int regions = blockGrid.judge(out);
+        m.recordDetect(mergeNanos - beginNanos, System.nanoTime() - mergeNanos, regions);
+        return regions;
+    }
 
     /**
-     * 合并周围5格近邻的运动区块
+     * 按图片尺寸准备区块矩阵，并清零区块运动计数器和判决器。设置了掩码时，被屏蔽的区块在判决器中预先标记。
+     *
+     * @return 掩码的区块闸门，没有掩码时为 null
      */
-    private void mergeNeighborBlocks(int blockX, int blockY, Rect pixelRect) {
-        for (int nbx = blockX - 5; nbx < blockX + 5; nbx++) {
-            for (int nby = blockY - 5; nby < blockY + 5; nby++) {
+    private byte[] prepareBlockGrid(int pixelWidth, int pixelHeight) {
+        if (blockGrid == null || !blockGrid.matches(pixelWidth, pixelHeight)) {
+            // 划分区块：将一张图片，按照设定的区块大小，切分成若干个区块，并统计各个区块的运动像素
+            blockGrid = new MotionBlockGrid(pixelWidth, pixelHeight, blockSizeThreshold);
+            bandTasks = createBandTasks(blockGrid.blockHeight);
+        }
 
-                // 邻居区块：某个指定区块周围5个区块
-                boolean isNear5 = (nbx > 0 && nbx < pixelWidth / blockSizeThreshold)
-                        && (nby > 0 && nby < pixelHeight / blockSizeThreshold);
+        MotionMask m = mask;
+        if (m == null) {
+            blockGrid.reset();
+            return null;
+        }
+        if (!m.matches(pixelWidth, pixelHeight)) {
+            throw new IllegalStateException("mask " + m.getPixelWidth() + "x" + m.getPixelHeight()
+                    + " does not match frame " + pixelWidth + "x" + pixelHeight);
+        }
+        // 整帧使用同一块位图，期间 apply 的新掩码从下一帧开始生效
+        MotionMask.Blocks blocks = m.current();
+        blockGrid.reset(blocks.masked);
+        return blocks.gate;
+    }
 
-                if (isNear5) {
+    private void doBlockMotionCount(MatrixImage currImage, MatrixImage diffImage, byte[] gate) {
+        bandCurrImage = currImage;
+        bandDiffImage = diffImage;
+        bandGate = gate;
+        try {
+            countBands();
+        } finally {
+            bandCurrImage = null;
+            bandDiffImage = null;
+            bandGate = null;
+        }
+    }
 
-                    // 对于邻居区块是运动的，且尚未被标记的
-                    if (isMotionBlock(nbx, nby) && !blockMotionJudge[nbx][nby]) {
+    private void doBlockMotionCount(LumaImage currLuma, LumaImage diffLuma, byte[] gate) {
+        bandCurrLuma = currLuma;
+        bandDiffLuma = diffLuma;
+        bandGate = gate;
+        try {
+            countBands();
+        } finally {
+            bandCurrLuma = null;
+            bandDiffLuma = null;
+            bandGate = null;
+        }
+    }
 
-                        // 跟邻居对比，左顶点往左靠
-                        if (nbx * blockSizeThreshold < pixelRect.getX1()) {
-                            pixelRect.setX1(nbx * blockSizeThreshold);
-                        }
-                        if (nby * blockSizeThreshold < pixelRect.getY1()) {
-                            pixelRect.setY1(nby * blockSizeThreshold);
-                        }
+    /**
+     * 逐个条带统计运动像素：串行模式下在当前线程统计整幅图片，并行模式下各条带提交到线程池
+     */
+    private void countBands() {
+        if (bandExecutor == null || bandTasks.size() <= 1) {
+            countBand(0, blockGrid.blockHeight);
+            return;
+        }
 
-                        // 跟邻居对比，右底点往右靠
-                        if (nbx * blockSizeThreshold > pixelRect.getX2()) {
-                            pixelRect.setX2(nbx * blockSizeThreshold);
-                        }
-                        if (nby * blockSizeThreshold > pixelRect.getY2()) {
-                            pixelRect.setY2(nby * blockSizeThreshold);
-                        }
+        // 各条带只写自己那几行区块的计数器，互不重叠，无需加锁
+        try {
+            List<Future<Void>> futures = bandExecutor.invokeAll(bandTasks);
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("motion count interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("motion count failure", e.getCause());
+        }
+    }
 
-                        // 把"邻居区块"也标记为"运动区块"
-                        blockMotionJudge[nbx][nby] = true;
+    private void countBand(int fromBlockY, int toBlockY) {
+        if (bandCurrLuma != null) {
+            countLumaBlockRows(bandCurrLuma, bandDiffLuma, bandGate, fromBlockY, toBlockY);
+        } else if (bandCurrDirect != null) {
+            countDirectBlockRows(bandCurrDirect, bandDiffDirect, bandGate, fromBlockY, toBlockY);
+        } else if (earlyExit || samplingStride > 1) {
+            countBlocks(bandCurrImage, bandDiffImage, bandGate, fromBlockY, toBlockY);
+        } else {
+            countBlockRows(bandCurrImage, bandDiffImage, bandGate, fromBlockY, toBlockY);
+        }
+    }
 
-                        // 每当标记一个运动区域时，立即找出它的邻居区域也是运动的，但是尚未标记的
-                        mergeNeighborBlocks(nbx, nby, pixelRect);
+    /**
+     * 按区块逐个统计区块行 [fromBlockY, toBlockY) 内的运动像素，支持提前结束和抽样
+     */
+    private void countBlocks(MatrixImage currImage, MatrixImage diffImage, byte[] gate, int fromBlockY,
+                             int toBlockY) {
+        int[] currRgb = currImage.getRgbArray();
+        int[] diffRgb = diffImage.getRgbArray();
+        int width = currImage.getWidth();
+        int blockWidth = blockGrid.blockWidth;
+        int[] blockMotionCount = blockGrid.counts;
+
+        for (int by = fromBlockY; by < toBlockY; by++) {
+            for (int bx = 0; bx < blockWidth; bx++) {
+                int index = by * blockWidth + bx;
+                if (gate != null && gate[index] == 0) {
+                    continue;
+                }
+                int origin = by * blockSizeThreshold * width + bx * blockSizeThreshold;
+                blockMotionCount[index] = samplingStride > 1
+                        ? countSampledBlock(currRgb, diffRgb, width, origin)
+                        : countBlock(currRgb, diffRgb, width, origin);
+            }
+        }
+    }
+
+    /**
+     * 逐行统计一个区块的运动像素，每统计完一行检查能否提前结束
+     *
+     * @param origin 区块左上角像素的下标
+     */
+    private int countBlock(int[] currRgb, int[] diffRgb, int width, int origin) {
+        int half = blockGrid.halfBlockPixels;
+        int remaining = blockSizeThreshold * blockSizeThreshold;
+        int motion = 0;
+        for (int dy = 0; dy < blockSizeThreshold; dy++) {
+            int from = origin + dy * width;
+            motion += pixelKernel.countMotionPixels(currRgb, diffRgb, from, from + blockSizeThreshold,
+                    colorDiffThreshold);
+            remaining -= blockSizeThreshold;
+            if (earlyExit && (motion > half || motion + remaining <= half)) {
+                break;
+            }
+        }
+        return motion;
+    }
+
+    /**
+     * 按区块内的行优先顺序，每隔 samplingStride 个像素对比一个，返回按抽样比例放大的运动像素估计值
+     *
+     * @param origin 区块左上角像素的下标
+     */
+    private int countSampledBlock(int[] currRgb, int[] diffRgb, int width, int origin) {
+        int half = blockGrid.halfBlockPixels;
+        int remaining = blockSizeThreshold * blockSizeThreshold;
+        int motion = 0;
+        int dx = 0;
+        for (int dy = 0; dy < blockSizeThreshold; dy++) {
+            int row = origin + dy * width;
+            for (; dx < blockSizeThreshold; dx += samplingStride) {
+                if (MotionPixels.isMotionPixel(currRgb[row + dx], diffRgb[row + dx], colorDiffThreshold)) {
+                    motion += samplingStride;
+                }
+            }
+            // 抽样位置跨行延续
+            dx -= blockSizeThreshold;
+            remaining -= blockSizeThreshold;
+            if (earlyExit && (motion > half || motion + remaining <= half)) {
+                break;
+            }
+        }
+        return motion;
+    }
+
+    /**
+     * 统计区块行 [fromBlockY, toBlockY) 内每个区块的运动像素。不足一个区块的边缘像素不参与统计。
+     *
+     * @param gate 区块闸门，为 null 时统计所有区块
+     */
+    private void countBlockRows(MatrixImage currImage, MatrixImage diffImage, byte[] gate, int fromBlockY,
+                                int toBlockY) {
+        int[] currRgb = currImage.getRgbArray();
+        int[] diffRgb = diffImage.getRgbArray();
+        int width = currImage.getWidth();
+        int blockSize = blockSizeThreshold;
+        int blockWidth = blockGrid.blockWidth;
+        int[] blockMotionCount = blockGrid.counts;
+
+        for (int by = fromBlockY; by < toBlockY; by++) {
+            int countRow = by * blockWidth;
+            for (int y = by * blockSize; y < (by + 1) * blockSize; y++) {
+                int rowOffset = y * width;
+                for (int bx = 0; bx < blockWidth; bx++) {
+                    if (gate != null && gate[countRow + bx] == 0) {
+                        continue;
                     }
+                    int from = rowOffset + bx * blockSize;
+                    // 区块内"运动像素"计数器累加
+                    blockMotionCount[countRow + bx] += pixelKernel.countMotionPixels(currRgb, diffRgb, from,
+                            from + blockSize, colorDiffThreshold);
                 }
             }
         }
     }
 
-    private void resetBlockMotionMatrix() {
-        for (int x = 0; x < pixelWidth / blockSizeThreshold; x++) {
-            for (int y = 0; y < pixelHeight / blockSizeThreshold; y++) {
-                blockMotionCount[x][y] = 0;
-                blockMotionJudge[x][y] = false;
+    /**
+     * 亮度模式：统计区块行 [fromBlockY, toBlockY) 内每个区块的运动像素
+     *
+     * @param gate 区块闸门，为 null 时统计所有区块
+     */
+    private void countLumaBlockRows(LumaImage currLuma, LumaImage diffLuma, byte[] gate, int fromBlockY,
+                                    int toBlockY) {
+        byte[] currArray = currLuma.getLumaArray();
+        byte[] diffArray = diffLuma.getLumaArray();
+        int width = currLuma.getWidth();
+        int blockWidth = blockGrid.blockWidth;
+        int[] blockMotionCount = blockGrid.counts;
+
+        for (int by = fromBlockY; by < toBlockY; by++) {
+            int countRow = by * blockWidth;
+            for (int y = by * blockSizeThreshold; y < (by + 1) * blockSizeThreshold; y++) {
+                int rowOffset = y * width;
+                for (int bx = 0; bx < blockWidth; bx++) {
+                    if (gate != null && gate[countRow + bx] == 0) {
+                        continue;
+                    }
+                    int from = rowOffset + bx * blockSizeThreshold;
+                    blockMotionCount[countRow + bx] += countLumaMotionPixels(currArray, diffArray, from,
+                            from + blockSizeThreshold);
+                }
             }
         }
     }
 
+    /**
+     * 堆外模式：统计区块行 [fromBlockY, toBlockY) 内每个区块的运动像素，按下标直接读取本地内存
+     *
+     * @param gate 区块闸门，为 null 时统计所有区块
+     */
+    private void countDirectBlockRows(DirectMatrixImage currImage, DirectMatrixImage diffImage, byte[] gate,
+                                      int fromBlockY, int toBlockY) {
+        IntBuffer currRgb = currImage.getRgbBuffer();
+        IntBuffer diffRgb = diffImage.getRgbBuffer();
+        int width = currImage.getWidth();
+        int blockWidth = blockGrid.blockWidth;
+        int[] blockMotionCount = blockGrid.counts;
+
+        for (int by = fromBlockY; by < toBlockY; by++) {
+            int countRow = by * blockWidth;
+            for (int y = by * blockSizeThreshold; y < (by + 1) * blockSizeThreshold; y++) {
+                int rowOffset = y * width;
+                for (int bx = 0; bx < blockWidth; bx++) {
+                    if (gate != null && gate[countRow + bx] == 0) {
+                        continue;
+                    }
+                    int from = rowOffset + bx * blockSizeThreshold;
+                    int motion = 0;
+                    for (int i = from; i < from + blockSizeThreshold; i++) {
+                        if (MotionPixels.isMotionPixel(currRgb.get(i), diffRgb.get(i), colorDiffThreshold)) {
+                            motion++;
+                        }
+                    }
+                    blockMotionCount[countRow + bx] += motion;
+                }
+            }
+        }
+    }
 
     /**
-     * 判断一个区块是否是运动区块
+     * 亮度模式：统计一行像素 [from, to) 中亮度差大于色差阈值的像素个数
      */
-    private boolean isMotionBlock(int blockX, int blockY) {
-        int halfBlockPixels = (blockSizeThreshold * blockSizeThreshold) / 2;
-        // 如果区块内有超过半数是运动像素，则区块判别为"运动区块"
-        return blockMotionCount[blockX][blockY] > halfBlockPixels;
+    private int countLumaMotionPixels(byte[] currArray, byte[] diffArray, int from, int to) {
+        int motion = 0;
+        for (int i = from; i < to; i++) {
+            if (Math.abs((currArray[i] & 0xFF) - (diffArray[i] & 0xFF)) > colorDiffThreshold) {
+                motion++;
+            }
+        }
+        return motion;
+    }
+
+    /**
+     * 按区块行把图片切成 parallelism 个水平条带，条带边界与区块边界对齐
+     */
+    private List<BandCountTask> createBandTasks(int blockHeight) {
+        int bands = Math.max(1, Math.min(parallelism, blockHeight));
+        List<BandCountTask> tasks = new ArrayList<>(bands);
+        for (int i = 0; i < bands; i++) {
+            int fromBlockY = blockHeight * i / bands;
+            int toBlockY = blockHeight * (i + 1) / bands;
+            tasks.add(new BandCountTask(fromBlockY, toBlockY));
+        }
+        return tasks;
+    }
+
+    /**
+     * 一个水平条带的运动像素统计任务
+     */
+    private class BandCountTask implements Callable<Void> {
+
+        private final int fromBlockY;
+        private final int toBlockY;
+
+        BandCountTask(int fromBlockY, int toBlockY) {
+            this.fromBlockY = fromBlockY;
+            this.toBlockY = toBlockY;
+        }
+
+        @Override
+        public Void call() {
+            countBand(fromBlockY, toBlockY);
+            return null;
+        }
     }
 
 }
@@ -3,8 +3,11 @@ package com.downgoon.video.camera;
 import org.bytedeco.javacv.Frame;
 import org.bytedeco.javacv.FrameGrabber;
 
+import com.downgoon.video.image.FramePool;
 import com.downgoon.video.image.ImageConvertor;
+import com.downgoon.video.image.LumaImage;
 import com.downgoon.video.image.MatrixImage;
+import com.downgoon.video.metrics.MotionMetrics;
 
 /**
  * 通过OpenCV连接摄像头，并抓取图片。
@@ -22,6 +25,16 @@ public class CameraCapture implements CameraInterface {
 
     private int height = 480;
 
+    /**
+     * 抓到的帧借自这个池，调用方用完后 release
+     */
+    private FramePool framePool = new FramePool();
+
+    /**
+     * 指标，为 null 时不计时
+     */
+    private volatile MotionMetrics metrics;
+
     @Override
     public void connect(int deviceIndex) throws CameraException {
         connect(deviceIndex, width, height);
@@ -67,16 +80,66 @@ public class CameraCapture implements CameraInterface {
             throw new IllegalStateException("camera not connected, no frame captured");
         }
 
+        MotionMetrics m = metrics;
+        MatrixImage matrixImage = framePool.acquire(width, height);
         try {
+            if (m == null) {
+                return ImageConvertor.toMatrix(frameGrabber.grab(), matrixImage);
+            }
+            long beginNanos = System.nanoTime();
             Frame frame = frameGrabber.grab();
-            return ImageConvertor.toMatrix(frame, width, height);
+            long grabbedNanos = System.nanoTime();
+            ImageConvertor.toMatrix(frame, matrixImage);
+            m.recordGrab(grabbedNanos - beginNanos);
+            m.recordConvert(System.nanoTime() - grabbedNanos);
+            return matrixImage;
         } catch (Exception e) {
+            matrixImage.release();
+            if (m != null) {
+                m.captureFailed();
+            }
             // FrameGrabber$Exception: retrieve() Error: Could not retrieve frame. (Has start() been called?)
             throw new CameraException("camera frame capture failure", e);
         }
 
     }
 
+    /**
+     * 抓取一帧，只提取亮度通道
+     *
+     * @param lumaImage 复用的亮度图，为 null 或尺寸不符时新建一个
+     * @return 返回亮度帧
+     * @throws CameraException 抓图失败时，抛出相关异常。
+     */
+    public LumaImage getLumaFrame(LumaImage lumaImage) throws CameraException {
+        if (!connected) {
+            throw new IllegalStateException("camera not connected, no frame captured");
+        }
+
+        if (lumaImage == null || lumaImage.getWidth() != width || lumaImage.getHeight() != height) {
+            lumaImage = new LumaImage(width, height);
+        }
+
+        try {
+            Frame frame = frameGrabber.grab();
+            return ImageConvertor.toLuma(frame, lumaImage);
+        } catch (Exception e) {
+            throw new CameraException("camera frame capture failure", e);
+        }
+    }
+
+    public void setFramePool(FramePool framePool) {
+        this.framePool = framePool;
+    }
+
+    public FramePool getFramePool() {
+        return framePool;
+    }
+
+    public void setMetrics(MotionMetrics metrics) {
+        this.metrics = metrics;
+    }
+
     @Override
     public int getWidth() {
         return this.width;
@@ -11,6 +11,10 @@ public class CameraException extends Exception {
 
     private static final long serialVersionUID = 1040154087524461664L;
 
+    public CameraException(String message) {
+        super(message);
+    }
+
     public CameraException(String message, Throwable cause) {
         super(message, cause);
     }
@@ -48,7 +48,7 @@ public interface CameraInterface {
     /**
      * extract one frame from camera device
      *
-     * @return 返回帧
+     * @return 返回帧。如果帧借自帧缓冲池，调用方用完后调用 {@link MatrixImage#release()} 归还。
      * @throws CameraException 抓图失败时，抛出相关异常。
      */
     MatrixImage getFrame() throws CameraException;
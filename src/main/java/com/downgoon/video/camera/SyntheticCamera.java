@@ -0,0 +1,345 @@
+package com.downgoon.video.camera;
+
+import java.util.concurrent.TimeUnit;
+
+import com.downgoon.video.image.FramePool;
+import com.downgoon.video.image.MatrixImage;
+
+/**
+ * 合成画面的虚拟摄像头，用于压测和回归：任意分辨率，可配置移动的方块、传感器噪声、整体光照变化和整个场景切换。
+ * <p>
+ * 所有随机性来自构造时给定的种子，同一种子、同一配置生成的画面逐帧完全相同。
+ * 生成一帧只做查表和整数加法，帧借自 {@link FramePool}，稳定运行后不分配内存，远快于检测，不会成为压测的瓶颈。
+ * 场景切换时每个像素都变化，可以复现整个画面都在运动的最坏情形。
+ *
+ * <pre>
+ * SyntheticCamera camera = new SyntheticCamera(20161017L);
+ * camera.setMovingRects(3, 80, 6);
+ * camera.setNoise(4);
+ * camera.connect(0, 1920, 1080);
+ * </pre>
+ *
+ * @author downgoon@qq.com
+ * @since 2026-10-17
+ */
+public class SyntheticCamera implements CameraInterface {
+
+    /**
+     * 噪声表大小，2的幂
+     */
+    private static final int NOISE_TABLE_SIZE = 1 << 16;
+
+    private final long seed;
+
+    /**
+     * xorshift 随机数状态
+     */
+    private long randomState;
+
+    private volatile boolean connected;
+
+    private int width = 640;
+
+    private int height = 480;
+
+    private int rectCount = 2;
+
+    private int rectSize = 60;
+
+    private int rectSpeed = 4;
+
+    private int noiseAmplitude = 3;
+
+    private int lightingAmplitude = 0;
+
+    private int lightingPeriod = 100;
+
+    private int sceneChangeInterval = 0;
+
+    /**
+     * 两帧之间的最小间隔，0表示尽快出帧
+     */
+    private long frameIntervalNanos = 0L;
+
+    private long nextFrameNanos;
+
+    private FramePool framePool = new FramePool();
+
+    private int[] background;
+
+    /**
+     * 打包好的三通道噪声，每个通道取值 [0, 2 * noiseAmplitude]
+     */
+    private int[] noiseTable;
+
+    /**
+     * 方块的位置、速度、颜色
+     */
+    private int[] rectX, rectY, rectDx, rectDy, rectColor;
+
+    private long frameIndex;
+
+    public SyntheticCamera(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * 连接之前设置，场景在连接时按配置生成
+     *
+     * @param count 方块个数
+     * @param size  方块边长（像素）
+     * @param speed 每帧移动的最大像素数
+     */
+    public void setMovingRects(int count, int size, int speed) {
+        checkNotConnected();
+        if (count < 0 || size < 1 || speed < 0) {
+            throw new IllegalArgumentException("illegal moving rects: count " + count + ", size " + size
+                    + ", speed " + speed);
+        }
+        this.rectCount = count;
+        this.rectSize = size;
+        this.rectSpeed = speed;
+    }
+
+    /**
+     * 连接之前设置：噪声表和背景的余量在连接时按噪声幅度生成
+     *
+     * @param amplitude 每个通道的噪声幅度，[0, 32]
+     */
+    public void setNoise(int amplitude) {
+        checkNotConnected();
+        if (amplitude < 0 || amplitude > 32) {
+            throw new IllegalArgumentException("noise amplitude must be in [0, 32]: " + amplitude);
+        }
+        this.noiseAmplitude = amplitude;
+    }
+
+    /**
+     * 整体光照按正弦缓慢变化。连接之前设置：背景的余量在连接时按光照幅度生成，之后加大幅度会使通道进位
+     *
+     * @param amplitude    亮度变化幅度，[0, 128]
+     * @param periodFrames 变化周期（帧数）
+     */
+    public void setLightingShift(int amplitude, int periodFrames) {
+        checkNotConnected();
+        if (amplitude < 0 || amplitude > 128) {
+            throw new IllegalArgumentException("lighting amplitude must be in [0, 128]: " + amplitude);
+        }
+        this.lightingAmplitude = amplitude;
+        this.lightingPeriod = Math.max(1, periodFrames);
+    }
+
+    /**
+     * @param frames 每隔多少帧整个场景切换一次，0表示不切换
+     */
+    public void setSceneChangeInterval(int frames) {
+        this.sceneChangeInterval = frames;
+    }
+
+    /**
+     * @param fps 出帧的帧率，0表示尽快出帧
+     */
+    public void setFrameRate(double fps) {
+        this.frameIntervalNanos = fps > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / fps) : 0L;
+    }
+
+    public void setFramePool(FramePool framePool) {
+        this.framePool = framePool;
+    }
+
+    /**
+     * 场景参数决定了连接时生成的数组和背景余量，连接之后不能再改，断开后可以改了重新连接
+     */
+    private void checkNotConnected() {
+        if (connected) {
+            throw new IllegalStateException("synthetic camera already connected, disconnect before reconfiguring");
+        }
+    }
+
+    @Override
+    public void connect(int deviceIndex) throws CameraException {
+        connect(deviceIndex, width, height);
+    }
+
+    /**
+     * 按当前配置生成场景，从第0帧开始
+     *
+     * @param deviceIndex 不使用
+     */
+    @Override
+    public void connect(int deviceIndex, int width, int height) throws CameraException {
+        this.width = width;
+        this.height = height;
+        this.randomState = seed == 0 ? 0x9E3779B97F4A7C15L : seed;
+        this.frameIndex = 0;
+        this.background = new int[width * height];
+
+        this.noiseTable = new int[NOISE_TABLE_SIZE];
+        for (int i = 0; i < NOISE_TABLE_SIZE; i++) {
+            noiseTable[i] = (nextInt(2 * noiseAmplitude + 1) << 16) | (nextInt(2 * noiseAmplitude + 1) << 8)
+                    | nextInt(2 * noiseAmplitude + 1);
+        }
+
+        rectX = new int[rectCount];
+        rectY = new int[rectCount];
+        rectDx = new int[rectCount];
+        rectDy = new int[rectCount];
+        rectColor = new int[rectCount];
+        for (int r = 0; r < rectCount; r++) {
+            rectX[r] = nextInt(Math.max(1, width - rectSize));
+            rectY[r] = nextInt(Math.max(1, height - rectSize));
+            rectDx[r] = nextInt(2 * rectSpeed + 1) - rectSpeed;
+            rectDy[r] = nextInt(2 * rectSpeed + 1) - rectSpeed;
+            rectColor[r] = 0xFF000000 | (nextInt(256) << 16) | (nextInt(256) << 8) | nextInt(256);
+        }
+
+        generateScene();
+        nextFrameNanos = System.nanoTime();
+        connected = true;
+    }
+
+    @Override
+    public boolean isConnected() {
+        return this.connected;
+    }
+
+    @Override
+    public void disconnect() throws CameraException {
+        connected = false;
+    }
+
+    /**
+     * 生成下一帧，用完后调用 {@link MatrixImage#release()} 归还
+     */
+    @Override
+    public MatrixImage getFrame() throws CameraException {
+        if (!connected) {
+            throw new IllegalStateException("camera not connected, no frame captured");
+        }
+
+        if (frameIntervalNanos > 0) {
+            long waitNanos = nextFrameNanos - System.nanoTime();
+            if (waitNanos > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(waitNanos);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new CameraException("synthetic frame interrupted", e);
+                }
+            }
+            nextFrameNanos += frameIntervalNanos;
+        }
+
+        MatrixImage frame = framePool.acquire(width, height);
+        render(frame);
+        return frame;
+    }
+
+    /**
+     * 把下一帧画到调用方提供的图片上，尺寸须与连接时一致
+     */
+    public void render(MatrixImage frame) {
+        if (sceneChangeInterval > 0 && frameIndex > 0 && frameIndex % sceneChangeInterval == 0) {
+            generateScene();
+        }
+
+        // 背景 + 噪声 + 光照：背景每个通道都预留了余量，打包相加不会进位
+        int[] rgbArray = frame.getRgbArray();
+        int pixels = width * height;
+        int light = (int) Math.round(lightingAmplitude
+                * (1 + Math.sin(2 * Math.PI * (frameIndex % lightingPeriod) / lightingPeriod)) / 2);
+        int lightPacked = (light << 16) | (light << 8) | light;
+        if (noiseAmplitude == 0) {
+            for (int i = 0; i < pixels; i++) {
+                rgbArray[i] = background[i] + lightPacked;
+            }
+        } else {
+            int[] noise = noiseTable;
+            int noiseOffset = nextInt(NOISE_TABLE_SIZE);
+            for (int i = 0; i < pixels; i++) {
+                rgbArray[i] = background[i] + noise[(noiseOffset + i) & (NOISE_TABLE_SIZE - 1)] + lightPacked;
+            }
+        }
+
+        // 移动的方块，碰到边缘反弹
+        for (int r = 0; r < rectCount; r++) {
+            rectX[r] += rectDx[r];
+            rectY[r] += rectDy[r];
+            if (rectX[r] < 0 || rectX[r] + rectSize > width) {
+                rectDx[r] = -rectDx[r];
+                rectX[r] = Math.max(0, Math.min(rectX[r], width - rectSize));
+            }
+            if (rectY[r] < 0 || rectY[r] + rectSize > height) {
+                rectDy[r] = -rectDy[r];
+                rectY[r] = Math.max(0, Math.min(rectY[r], height - rectSize));
+            }
+            int x2 = Math.min(width, rectX[r] + rectSize);
+            int y2 = Math.min(height, rectY[r] + rectSize);
+            for (int y = rectY[r]; y < y2; y++) {
+                int rowOffset = y * width;
+                for (int x = rectX[r]; x < x2; x++) {
+                    rgbArray[rowOffset + x] = rectColor[r];
+                }
+            }
+        }
+
+        frameIndex++;
+    }
+
+    /**
+     * 生成一个新的背景：随机方向的渐变叠加随机色块，每个通道的取值不超过 255 - 噪声余量 - 光照余量
+     */
+    private void generateScene() {
+        int headroom = 2 * noiseAmplitude + lightingAmplitude;
+        int range = Math.max(1, 256 - headroom);
+        int tile = Math.max(8, Math.min(width, height) / 8);
+        int tilesPerRow = (width + tile - 1) / tile;
+        int gradientX = nextInt(range);
+        int gradientY = range - 1 - gradientX;
+        int tint = nextInt(1 << 24);
+        int tileSeed = nextInt(Integer.MAX_VALUE);
+
+        for (int y = 0; y < height; y++) {
+            int rowOffset = y * width;
+            int tileRow = (y / tile) * tilesPerRow;
+            for (int x = 0; x < width; x++) {
+                // 色块的亮度由所在色块的编号散列得到
+                int h = (tileRow + x / tile) * 0x9E3779B1 + tileSeed;
+                h ^= h >>> 15;
+                int value = (x * gradientX / width + y * gradientY / height + (h & 0x3F)) % range;
+                int red = (value + ((tint >>> 16) & 0xFF)) % range;
+                int green = (value + ((tint >>> 8) & 0xFF)) % range;
+                int blue = (value + (tint & 0xFF)) % range;
+                background[rowOffset + x] = 0xFF000000 | (red << 16) | (green << 8) | blue;
+            }
+        }
+    }
+
+    /**
+     * [0, bound) 的伪随机整数，xorshift64*
+     */
+    private int nextInt(int bound) {
+        long x = randomState;
+        x ^= x >>> 12;
+        x ^= x << 25;
+        x ^= x >>> 27;
+        randomState = x;
+        long r = (x * 0x2545F4914F6CDD1DL) >>> 33;
+        return (int) (r % bound);
+    }
+
+    public long getFrameIndex() {
+        return frameIndex;
+    }
+
+    @Override
+    public int getWidth() {
+        return this.width;
+    }
+
+    @Override
+    public int getHeight() {
+        return this.height;
+    }
+
+}
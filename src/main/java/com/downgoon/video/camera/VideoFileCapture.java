@@ -0,0 +1,352 @@
+package com.downgoon.video.camera;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.bytedeco.javacv.FFmpegFrameGrabber;
+import org.bytedeco.javacv.Frame;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.downgoon.video.image.FramePool;
+import com.downgoon.video.image.ImageConvertor;
+import com.downgoon.video.image.MatrixImage;
+import com.downgoon.video.metrics.MotionMetrics;
+
+/**
+ * 通过FFmpeg读取视频文件或网络视频流（rtsp、http等），当作摄像头使用，没有摄像头的机器也能跑检测。
+ * <p>
+ * 一个单独的解码线程提前解码，转换成借自 {@link FramePool} 的帧，放进一个有界队列；{@link #getFrame()} 从队列中取帧。
+ * 两种节奏：
+ * <ul>
+ * <li>{@link Pacing#REALTIME 实时}：按帧的时间戳放帧，与摄像头一样，取帧跟不上时丢弃最旧的帧；</li>
+ * <li>{@link Pacing#AS_FAST_AS_POSSIBLE 尽快}：解码多快就放多快，队列满时解码线程等待，不丢帧，用于处理录像。</li>
+ * </ul>
+ * 视频读完或解码失败后 {@link #isConnected()} 变为 false，{@link #getFrame()} 抛出 {@link CameraException}；
+ * 用 {@link #isEndOfStream()} 区分两者，解码失败的原因见 {@link #getDecodeException()}。
+ *
+ * @author downgoon@qq.com
+ * @since 2026-10-17
+ */
+public class VideoFileCapture implements CameraInterface {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(VideoFileCapture.class);
+
+    /**
+     * 放帧的节奏
+     */
+    public enum Pacing {
+
+        /**
+         * 按视频的时间戳放帧
+         */
+        REALTIME,
+
+        /**
+         * 解码多快就放多快
+         */
+        AS_FAST_AS_POSSIBLE
+    }
+
+    private final String source;
+
+    private final Pacing pacing;
+
+    /**
+     * 提前解码的帧数
+     */
+    private final int aheadFrames;
+
+    private volatile FFmpegFrameGrabber frameGrabber;
+
+    private volatile boolean connected;
+
+    private volatile boolean decodeFinished;
+
+    private volatile Exception decodeException;
+
+    /**
+     * 视频正常读完，且已经取完所有帧
+     */
+    private volatile boolean endOfStream;
+
+    private Thread decodeThread;
+
+    private BlockingQueue<MatrixImage> decodedFrames;
+
+    private FramePool framePool = new FramePool();
+
+    /**
+     * 指标，为 null 时不计时；抓图指解码，在解码线程上记录
+     */
+    private volatile MotionMetrics metrics;
+
+    private int width;
+
+    private int height;
+
+    private double frameRate;
+
+    private final AtomicLong decodedCount = new AtomicLong();
+
+    private final AtomicLong droppedCount = new AtomicLong();
+
+    public VideoFileCapture(String source) {
+        this(source, Pacing.REALTIME, 8);
+    }
+
+    /**
+     * @param source      视频文件路径或网络地址
+     * @param pacing      放帧的节奏
+     * @param aheadFrames 提前解码的帧数，即队列容量
+     */
+    public VideoFileCapture(String source, Pacing pacing, int aheadFrames) {
+        if (aheadFrames < 1) {
+            throw new IllegalArgumentException("ahead frames must be positive: " + aheadFrames);
+        }
+        this.source = source;
+        this.pacing = pacing;
+        this.aheadFrames = aheadFrames;
+    }
+
+    /**
+     * 打开视频，画面保持原尺寸
+     *
+     * @param deviceIndex 不使用，视频由构造参数指定
+     */
+    @Override
+    public void connect(int deviceIndex) throws CameraException {
+        connect(deviceIndex, 0, 0);
+    }
+
+    /**
+     * 打开视频，画面缩放到指定尺寸
+     *
+     * @param deviceIndex 不使用，视频由构造参数指定
+     * @param width       画面宽度，0表示原尺寸
+     * @param height      画面高度，0表示原尺寸
+     */
+    @Override
+    public void connect(int deviceIndex, int width, int height) throws CameraException {
+        try {
+            frameGrabber = new FFmpegFrameGrabber(source);
+            if (width > 0 && height > 0) {
+                frameGrabber.setImageWidth(width);
+                frameGrabber.setImageHeight(height);
+            }
+            frameGrabber.start();
+        } catch (Exception e) {
+            throw new CameraException("video open failure: " + source, e);
+        }
+        this.width = frameGrabber.getImageWidth();
+        this.height = frameGrabber.getImageHeight();
+        this.frameRate = frameGrabber.getFrameRate();
+
+        decodedFrames = new ArrayBlockingQueue<>(aheadFrames);
+        decodeFinished = false;
+        decodeException = null;
+        endOfStream = false;
+        connected = true;
+
+        decodeThread = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                decodeContinuously();
+            }
+        }, "video-decode");
+        decodeThread.setDaemon(true);
+        decodeThread.start();
+    }
+
+    private void decodeContinuously() {
+        long startNanos = System.nanoTime();
+        try {
+            while (connected) {
+                MotionMetrics m = metrics;
+                long beginNanos = m != null ? System.nanoTime() : 0L;
+                Frame frame = frameGrabber.grabImage();
+                if (frame == null) {
+                    break;
+                }
+                long grabbedNanos = m != null ? System.nanoTime() : 0L;
+                MatrixImage matrixImage = framePool.acquire(width, height);
+                boolean queued = false;
+                try {
+                    ImageConvertor.toMatrix(frame, matrixImage);
+                    decodedCount.incrementAndGet();
+                    if (m != null) {
+                        m.recordGrab(grabbedNanos - beginNanos);
+                        m.recordConvert(System.nanoTime() - grabbedNanos);
+                    }
+
+                    if (pacing == Pacing.REALTIME) {
+                        // 等到这一帧的时间点再放出去
+                        long dueNanos = startNanos + TimeUnit.MICROSECONDS.toNanos(frameGrabber.getTimestamp());
+                        long waitNanos = dueNanos - System.nanoTime();
+                        if (waitNanos > 0) {
+                            TimeUnit.NANOSECONDS.sleep(waitNanos);
+                        }
+                        while (!decodedFrames.offer(matrixImage)) {
+                            MatrixImage oldest = decodedFrames.poll();
+                            if (oldest != null) {
+                                oldest.release();
+                                droppedCount.incrementAndGet();
+                                if (m != null) {
+                                    m.frameDropped();
+                                }
+                            }
+                        }
+                    } else {
+                        decodedFrames.put(matrixImage);
+                    }
+                    queued = true;
+                } finally {
+                    // 转换失败，或者在等待时被 disconnect 中断，这一帧没有放进队列
+                    if (!queued) {
+                        matrixImage.release();
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            // disconnect
+        } catch (Exception e) {
+            decodeException = e;
+            MotionMetrics m = metrics;
+            if (m != null) {
+                m.captureFailed();
+            }
+            LOGGER.error("video decode exception: {}", e.getMessage(), e);
+        } finally {
+            decodeFinished = true;
+        }
+    }
+
+    @Override
+    public boolean isConnected() {
+        return this.connected;
+    }
+
+    @Override
+    public void disconnect() throws CameraException {
+        connected = false;
+        if (decodeThread != null) {
+            decodeThread.interrupt();
+            try {
+                decodeThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            decodeThread = null;
+        }
+        if (decodedFrames != null) {
+            MatrixImage left;
+            while ((left = decodedFrames.poll()) != null) {
+                left.release();
+            }
+        }
+        try {
+            if (frameGrabber != null) {
+                frameGrabber.stop();
+                frameGrabber.release();
+            }
+        } catch (Exception e) {
+            throw new CameraException("video close failure: " + source, e);
+        }
+    }
+
+    /**
+     * 取下一帧，等待解码线程。用完后调用 {@link MatrixImage#release()} 归还。
+     *
+     * @throws CameraException 视频读完或解码失败
+     */
+    @Override
+    public MatrixImage getFrame() throws CameraException {
+        if (!connected) {
+            throw new IllegalStateException("video not opened, no frame captured");
+        }
+
+        try {
+            while (true) {
+                boolean finished = decodeFinished;
+                MatrixImage frame = decodedFrames.poll(100L, TimeUnit.MILLISECONDS);
+                if (frame != null) {
+                    return frame;
+                }
+                if (finished) {
+                    // 解码线程已经结束，且队列已经取空
+                    connected = false;
+                    if (decodeException != null) {
+                        throw new CameraException("video decode failure: " + source, decodeException);
+                    }
+                    endOfStream = true;
+                    throw new CameraException("end of video: " + source);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CameraException("video frame capture interrupted", e);
+        }
+    }
+
+    /**
+     * 视频是否已经正常读完：解码线程读到了结尾，且所有帧都已取出。解码失败时为 false。
+     */
+    public boolean isEndOfStream() {
+        return endOfStream;
+    }
+
+    /**
+     * 解码线程遇到的异常，没有失败时为 null
+     */
+    public Exception getDecodeException() {
+        return decodeException;
+    }
+
+    public void setFramePool(FramePool framePool) {
+        this.framePool = framePool;
+    }
+
+    public void setMetrics(MotionMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public Pacing getPacing() {
+        return pacing;
+    }
+
+    /**
+     * 视频的帧率，打开之后有效
+     */
+    public double getFrameRate() {
+        return frameRate;
+    }
+
+    public long getDecodedCount() {
+        return decodedCount.get();
+    }
+
+    /**
+     * 实时节奏下，取帧跟不上而丢弃的帧数
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    @Override
+    public int getWidth() {
+        return this.width;
+    }
+
+    @Override
+    public int getHeight() {
+        return this.height;
+    }
+
+}
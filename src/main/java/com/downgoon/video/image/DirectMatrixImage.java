@@ -0,0 +1,174 @@
+package com.downgoon.video.image;
+
+import java.awt.Color;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+
+/**
+ * an ARGB image whose pixels live off the heap in a direct
+ * {@link ByteBuffer}, one native order int per pixel, row by row.
+ * <p>
+ * large frame rings (pre-roll, decode-ahead, many streams) of such images
+ * do not grow the heap nor the GC pauses. {@link ImageConvertor#toDirect}
+ * fills it straight from the native memory of the grabbed frame, and
+ * {@code VideoMotionDetector} reads it in place, so a frame never needs to
+ * be copied onto the heap for detection. copy it into a {@link MatrixImage}
+ * only when a {@link java.awt.image.BufferedImage} is needed, e.g. to show
+ * or save it.
+ *
+ * @author downgoon@qq.com
+ * @since 2026-10-17
+ */
+public class DirectMatrixImage implements PixelImage {
+
+    private final int width;
+
+    private final int height;
+
+    private final ByteBuffer byteBuffer;
+
+    /**
+     * int view of the byte buffer, pixels are read and written by absolute
+     * index {@code y * width + x}
+     */
+    private final IntBuffer rgbBuffer;
+
+    /**
+     * Constructor to blank image allocated off the heap
+     *
+     * @param width  width
+     * @param height height
+     */
+    public DirectMatrixImage(int width, int height) {
+        this(width, height, ByteBuffer.allocateDirect(width * height * 4));
+    }
+
+    /**
+     * Constructor wrapping a buffer without copying it, such as a slice of a
+     * memory mapped file
+     *
+     * @param width      width
+     * @param height     height
+     * @param byteBuffer at least width * height * 4 bytes from its position,
+     *                   its byte order is set to the native order
+     */
+    public DirectMatrixImage(int width, int height, ByteBuffer byteBuffer) {
+        if (byteBuffer.remaining() < width * height * 4) {
+            throw new IllegalArgumentException("buffer too small: " + byteBuffer.remaining() + " < "
+                    + width * height * 4);
+        }
+        this.width = width;
+        this.height = height;
+        this.byteBuffer = byteBuffer.order(ByteOrder.nativeOrder());
+        this.rgbBuffer = this.byteBuffer.asIntBuffer();
+    }
+
+    /**
+     * @return int view of the pixels, shared with the image
+     */
+    public IntBuffer getRgbBuffer() {
+        return rgbBuffer;
+    }
+
+    /**
+     * @return the underlying buffer, shared with the image
+     */
+    public ByteBuffer getByteBuffer() {
+        return byteBuffer;
+    }
+
+    /**
+     * copy the pixels onto the heap, the target is at least as large as this image
+     */
+    public void copyTo(MatrixImage targetImg) {
+        IntBuffer source = rgbBuffer.duplicate();
+        source.clear();
+        source.get(targetImg.getRgbArray(), 0, width * height);
+    }
+
+    /**
+     * copy the pixels from the heap, the source is at least as large as this image
+     */
+    public void copyFrom(MatrixImage sourceImg) {
+        IntBuffer target = rgbBuffer.duplicate();
+        target.clear();
+        target.put(sourceImg.getRgbArray(), 0, width * height);
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public int getColor(int x, int y) {
+        return rgbBuffer.get(y * width + x);
+    }
+
+    @Override
+    public int alpha(int x, int y) {
+        return (rgbBuffer.get(y * width + x) & 0xFF000000) >>> 24;
+    }
+
+    @Override
+    public int rgbR(int x, int y) {
+        return (rgbBuffer.get(y * width + x) & 0x00FF0000) >>> 16;
+    }
+
+    @Override
+    public int rgbG(int x, int y) {
+        return (rgbBuffer.get(y * width + x) & 0x0000FF00) >>> 8;
+    }
+
+    @Override
+    public int rgbB(int x, int y) {
+        return rgbBuffer.get(y * width + x) & 0x000000FF;
+    }
+
+    @Override
+    public void setColor(int x, int y, int color) {
+        rgbBuffer.put(y * width + x, color);
+    }
+
+    @Override
+    public void drawRect(int x, int y, int w, int h, Color c) {
+        drawRect(x, y, w, h, c.getRGB());
+    }
+
+    @Override
+    public void drawRect(int x, int y, int w, int h, int thickness, Color c) {
+        int color = c.getRGB();
+        for (int i = 0; i < thickness; i++) {
+            drawRect(x + i, y + i, w - (i * 2), h - (i * 2), color);
+        }
+    }
+
+    private void drawRect(int x, int y, int w, int h, int color) {
+        for (int i = x; i < x + w; i++) {
+            setColor(i, y, color);
+            setColor(i, y + (h - 1), color);
+        }
+
+        for (int i = y; i < y + h; i++) {
+            setColor(x, i, color);
+            setColor(x + (w - 1), i, color);
+        }
+    }
+
+    @Override
+    public void fillRect(int x, int y, int w, int h, Color c) {
+        int color = c.getRGB();
+        for (int j = Math.max(0, y); j < Math.min(height, y + h); j++) {
+            for (int i = Math.max(0, x); i < Math.min(width, x + w); i++) {
+                setColor(i, j, color);
+            }
+        }
+    }
+
+}
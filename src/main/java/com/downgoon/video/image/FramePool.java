@@ -0,0 +1,127 @@
+package com.downgoon.video.image;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 帧缓冲池：按分辨率复用 {@link MatrixImage}，避免每帧分配一块整帧大小的像素数组和 {@link java.awt.image.BufferedImage}。
+ * <p>
+ * 借出的帧引用计数为1，每多一个持有者调用一次 {@link MatrixImage#retain()}，每个持有者用完调用一次
+ * {@link MatrixImage#release()}，计数归零时归还到池中。忘记释放不会泄漏，只是退化为每帧分配。
+ *
+ * <pre>
+ * MatrixImage frame = framePool.acquire(width, height);
+ * try {
+ *     ...
+ * } finally {
+ *     frame.release();
+ * }
+ * </pre>
+ *
+ * @author downgoon@qq.com
+ * @since 2026-10-17
+ */
+public class FramePool {
+
+    /**
+     * 每种分辨率最多缓存的空闲帧数
+     */
+    private final int maxIdlePerSize;
+
+    private final ConcurrentMap<Long, BlockingQueue<MatrixImage>> idleFrames = new ConcurrentHashMap<>();
+
+    private volatile IdleQueue lastIdleQueue;
+
+    private final AtomicLong allocatedCount = new AtomicLong();
+
+    public FramePool() {
+        this(8);
+    }
+
+    /**
+     * @param maxIdlePerSize 每种分辨率最多缓存的空闲帧数，多出的帧归还时直接丢给 GC
+     */
+    public FramePool(int maxIdlePerSize) {
+        if (maxIdlePerSize < 1) {
+            throw new IllegalArgumentException("max idle frames must be positive: " + maxIdlePerSize);
+        }
+        this.maxIdlePerSize = maxIdlePerSize;
+    }
+
+    /**
+     * 借出一帧，引用计数为1。像素内容是上一个使用者留下的，由调用方覆盖。
+     */
+    public MatrixImage acquire(int width, int height) {
+        MatrixImage frame = idleQueue(width, height).poll();
+        if (frame == null) {
+            frame = new MatrixImage(width, height);
+            allocatedCount.incrementAndGet();
+        }
+        frame.attach(this);
+        return frame;
+    }
+
+    /**
+     * 引用计数归零的帧由 {@link MatrixImage#release()} 归还到这里
+     */
+    void recycle(MatrixImage frame) {
+        idleQueue(frame.getWidth(), frame.getHeight()).offer(frame);
+    }
+
+    private BlockingQueue<MatrixImage> idleQueue(int width, int height) {
+        // 通常只有一种分辨率，先查最近用过的，免得每次装箱查表
+        IdleQueue last = lastIdleQueue;
+        if (last != null && last.width == width && last.height == height) {
+            return last.frames;
+        }
+
+        Long key = ((long) width << 32) | (height & 0xFFFFFFFFL);
+        BlockingQueue<MatrixImage> queue = idleFrames.get(key);
+        if (queue == null) {
+            queue = new ArrayBlockingQueue<>(maxIdlePerSize);
+            BlockingQueue<MatrixImage> existing = idleFrames.putIfAbsent(key, queue);
+            if (existing != null) {
+                queue = existing;
+            }
+        }
+        lastIdleQueue = new IdleQueue(width, height, queue);
+        return queue;
+    }
+
+    private static class IdleQueue {
+
+        final int width;
+
+        final int height;
+
+        final BlockingQueue<MatrixImage> frames;
+
+        IdleQueue(int width, int height, BlockingQueue<MatrixImage> frames) {
+            this.width = width;
+            this.height = height;
+            this.frames = frames;
+        }
+    }
+
+    /**
+     * 累计新分配的帧数，稳定运行后应不再增长
+     */
+    public long getAllocatedCount() {
+        return allocatedCount.get();
+    }
+
+    /**
+     * 当前池中空闲的帧数
+     */
+    public int getIdleCount() {
+        int idle = 0;
+        for (BlockingQueue<MatrixImage> queue : idleFrames.values()) {
+            idle += queue.size();
+        }
+        return idle;
+    }
+
+}
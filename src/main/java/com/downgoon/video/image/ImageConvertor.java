@@ -1,6 +1,9 @@
 package com.downgoon.video.image;
 
 import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import org.bytedeco.opencv.opencv_core.IplImage;
 import org.bytedeco.javacv.Frame;
@@ -10,31 +13,315 @@ import org.bytedeco.javacv.OpenCVFrameConverter;
  * 图片格式转换器:
  * <p>
  * {@link Frame}  -> {@link MatrixImage }
+ * <p>
+ * {@link Frame}  -> {@link LumaImage }
+ * <p>
+ * {@link Frame}  -> {@link DirectMatrixImage}（堆外，直接从本地内存打包，不经过堆上的字节数组）
+ * <p>
+ * {@link MatrixImage}  -> {@link Frame}（BGR，供录像编码）
+ * <p>
+ * 转换时先把本地内存中的 BGR 像素整块复制到一个按线程复用的字节数组，再在紧凑的循环里逐行打包，
+ * 按 {@code widthStep} 跳过行尾对齐填充。大图按行分段，在一个公共的 {@link ForkJoinPool} 上并行打包。
+ * {@link OpenCVFrameConverter} 也按线程复用，不再每帧新建。
  *
  * @author downgoon@qq.com
  * @since 2016-06-09
  */
 public class ImageConvertor {
 
+    /**
+     * 像素数达到该值的图片并行打包，更小的图片并行的调度开销得不偿失
+     */
+    private static final int PARALLEL_PIXELS = 640 * 480;
+
+    /**
+     * 并行打包时，每段至少这么多像素
+     */
+    private static final int SEGMENT_PIXELS = 64 * 1024;
+
+    private static final ForkJoinPool CONVERT_POOL = new ForkJoinPool();
+
+    private static final ThreadLocal<OpenCVFrameConverter.ToIplImage> CONVERTER =
+            new ThreadLocal<OpenCVFrameConverter.ToIplImage>() {
+
+                @Override
+                protected OpenCVFrameConverter.ToIplImage initialValue() {
+                    return new OpenCVFrameConverter.ToIplImage();
+                }
+            };
+
+    /**
+     * 整块复制本地像素用的字节数组，按线程复用，只在图片变大时重新分配
+     */
+    private static final ThreadLocal<byte[]> PIXEL_BYTES = new ThreadLocal<>();
+
     public static MatrixImage toMatrix(Frame frame, int width, int height) {
+        return toMatrix(frame, new MatrixImage(width, height));
+    }
+
+    /**
+     * 转换为 ARGB 图片，写入调用方提供的 matrixImage（通常借自 {@link FramePool}），以便逐帧复用
+     */
+    public static MatrixImage toMatrix(Frame frame, MatrixImage matrixImage) {
 
         // convert frame to IplImage
-        OpenCVFrameConverter.ToIplImage converter = new OpenCVFrameConverter.ToIplImage();
-        IplImage iplImage = converter.convert(frame);
+        IplImage iplImage = CONVERTER.get().convert(frame);
 
         // convert IplImage to MatrixImage
-        int[] rgbArray = new int[width * height];
-        extractAndTransferRgb(iplImage, rgbArray);
-        return new MatrixImage(width, height, rgbArray);
+        extractAndTransferRgb(iplImage, matrixImage);
+        return matrixImage;
+
+    }
+
+    /**
+     * 转换为堆外的 ARGB 图片，写入调用方提供的 directImage。从 {@link IplImage} 的本地内存逐像素读取，
+     * 直接写入 directImage 的本地内存，像素不经过堆。
+     */
+    @SuppressWarnings("deprecation")
+    public static DirectMatrixImage toDirect(Frame frame, DirectMatrixImage directImage) {
+        IplImage iplImage = CONVERTER.get().convert(frame);
+        int width = Math.min(iplImage.width(), directImage.getWidth());
+        int height = availableRows(iplImage, width, Math.min(iplImage.height(), directImage.getHeight()));
+        packDirectRows(iplImage.getByteBuffer(), iplImage.widthStep(), iplImage.nChannels(), width, height,
+                directImage.getRgbBuffer(), directImage.getWidth());
+        return directImage;
+    }
+
+    /**
+     * 把 BGR（或灰度）本地内存打包成 ARGB，写入另一块本地内存，按 widthStep 跳过行尾对齐填充
+     */
+    static void packDirectRows(ByteBuffer bytes, int widthStep, int channels, int width, int height,
+            IntBuffer rgbBuffer, int targetWidth) {
+        for (int y = 0; y < height; y++) {
+            int byteIdx = y * widthStep;
+            int pixelIdx = y * targetWidth;
+            int pixelEnd = pixelIdx + width;
+            if (channels == 1) {
+                for (; pixelIdx < pixelEnd; pixelIdx++, byteIdx++) {
+                    int gray = bytes.get(byteIdx) & 0xFF;
+                    rgbBuffer.put(pixelIdx, 0xFF000000 | (gray << 16) | (gray << 8) | gray);
+                }
+            } else {
+                for (; pixelIdx < pixelEnd; pixelIdx++, byteIdx += channels) {
+                    rgbBuffer.put(pixelIdx, 0xFF000000 | ((bytes.get(byteIdx + 2) & 0xFF) << 16)
+                            | ((bytes.get(byteIdx + 1) & 0xFF) << 8) | (bytes.get(byteIdx) & 0xFF));
+                }
+            }
+        }
+    }
+
+    /**
+     * 只提取亮度通道：直接从 BGR 格式的 {@link IplImage} 计算每个像素的亮度
+     */
+    public static LumaImage toLuma(Frame frame, int width, int height) {
+        return toLuma(frame, new LumaImage(width, height));
+    }
+
+    /**
+     * 只提取亮度通道，写入调用方提供的 lumaImage，以便逐帧复用
+     */
+    public static LumaImage toLuma(Frame frame, LumaImage lumaImage) {
+
+        // convert frame to IplImage
+        IplImage iplImage = CONVERTER.get().convert(frame);
+
+        extractAndTransferLuma(iplImage, lumaImage);
+        return lumaImage;
+    }
+
+    /**
+     * 从 ARGB 图片计算亮度，写入调用方提供的 lumaImage
+     */
+    public static LumaImage toLuma(MatrixImage matrixImage, LumaImage lumaImage) {
+        int[] rgbArray = matrixImage.getRgbArray();
+        byte[] lumaArray = lumaImage.getLumaArray();
+        int pixels = Math.min(rgbArray.length, lumaImage.getWidth() * lumaImage.getHeight());
+        for (int i = 0; i < pixels; i++) {
+            int rgb = rgbArray[i];
+            lumaArray[i] = (byte) LumaImage.luma((rgb >>> 16) & 0xFF, (rgb >>> 8) & 0xFF, rgb & 0xFF);
+        }
+        return lumaImage;
+    }
+
+    /**
+     * 转换为 3 通道 BGR 的 {@link Frame}，写入调用方提供的 frame（{@code new Frame(w, h, Frame.DEPTH_UBYTE, 3)}），以便逐帧复用。
+     * 先在本线程复用的字节数组里解包，再整块写入本地内存。
+     */
+    public static Frame toFrame(MatrixImage matrixImage, Frame frame) {
+        int width = Math.min(frame.imageWidth, matrixImage.getWidth());
+        int height = Math.min(frame.imageHeight, matrixImage.getHeight());
+        int stride = frame.imageStride;
+        int length = height * stride;
+
+        byte[] pixelBytes = PIXEL_BYTES.get();
+        if (pixelBytes == null || pixelBytes.length < length) {
+            pixelBytes = new byte[length];
+            PIXEL_BYTES.set(pixelBytes);
+        }
 
+        int[] rgbArray = matrixImage.getRgbArray();
+        int imageWidth = matrixImage.getWidth();
+        for (int y = 0; y < height; y++) {
+            int src = y * imageWidth;
+            int dst = y * stride;
+            for (int x = 0; x < width; x++) {
+                int rgb = rgbArray[src + x];
+                pixelBytes[dst++] = (byte) rgb;
+                pixelBytes[dst++] = (byte) (rgb >>> 8);
+                pixelBytes[dst++] = (byte) (rgb >>> 16);
+            }
+        }
+
+        ByteBuffer frameBytes = ((ByteBuffer) frame.image[0]).duplicate();
+        frameBytes.clear();
+        frameBytes.put(pixelBytes, 0, Math.min(length, frameBytes.capacity()));
+        return frame;
+    }
+
+    private static void extractAndTransferRgb(IplImage iplImage, MatrixImage matrixImage) {
+        int width = Math.min(iplImage.width(), matrixImage.getWidth());
+        int height = availableRows(iplImage, width, Math.min(iplImage.height(), matrixImage.getHeight()));
+        byte[] pixelBytes = copyPixelBytes(iplImage, height);
+        pack(new PackTask(pixelBytes, iplImage.widthStep(), iplImage.nChannels(), width, matrixImage.getWidth(),
+                matrixImage.getRgbArray(), null, 0, height));
+    }
+
+    private static void extractAndTransferLuma(IplImage iplImage, LumaImage lumaImage) {
+        int width = Math.min(iplImage.width(), lumaImage.getWidth());
+        int height = availableRows(iplImage, width, Math.min(iplImage.height(), lumaImage.getHeight()));
+        byte[] pixelBytes = copyPixelBytes(iplImage, height);
+        pack(new PackTask(pixelBytes, iplImage.widthStep(), iplImage.nChannels(), width, lumaImage.getWidth(),
+                null, lumaImage.getLumaArray(), 0, height));
+    }
+
+    /**
+     * 本地内存实际能读出的完整行数，不超过 rows。最后一行可以没有行尾填充。
+     * 本地内存比 宽*高 短时（比如解码器给出的缓冲区不完整），只转换能读出的行，其余行保持原样。
+     */
+    @SuppressWarnings("deprecation")
+    private static int availableRows(IplImage iplImage, int width, int rows) {
+        int capacity = iplImage.getByteBuffer().capacity();
+        int rowBytes = width * iplImage.nChannels();
+        int available = capacity < rowBytes ? 0 : (capacity - rowBytes) / iplImage.widthStep() + 1;
+        return Math.min(rows, available);
     }
 
+    /**
+     * 把前 rows 行像素（含行尾填充）从本地内存整块复制到本线程复用的字节数组，rows 须已按 {@link #availableRows} 截断
+     */
     @SuppressWarnings("deprecation")
-    private static void extractAndTransferRgb(IplImage iplImage, int[] rgbArray) {
-        ByteBuffer iplArray = iplImage.getByteBuffer();
-        for (int i = 0, iplIdx = 0; iplIdx < iplArray.limit() - 3; i++, iplIdx += 3) {
-            rgbArray[i] = 0xFF000000 + (iplArray.get(iplIdx + 2) << 16) + (iplArray.get(iplIdx + 1) << 8)
-                    + iplArray.get(iplIdx);
+    private static byte[] copyPixelBytes(IplImage iplImage, int rows) {
+        ByteBuffer iplArray = iplImage.getByteBuffer().duplicate();
+        int length = Math.min(rows * iplImage.widthStep(), iplArray.capacity());
+
+        byte[] pixelBytes = PIXEL_BYTES.get();
+        if (pixelBytes == null || pixelBytes.length < length) {
+            pixelBytes = new byte[length];
+            PIXEL_BYTES.set(pixelBytes);
+        }
+        iplArray.clear();
+        iplArray.get(pixelBytes, 0, length);
+        return pixelBytes;
+    }
+
+    private static void pack(PackTask task) {
+        int pixels = task.width * (task.toY - task.fromY);
+        if (pixels >= PARALLEL_PIXELS && CONVERT_POOL.getParallelism() > 1) {
+            CONVERT_POOL.invoke(task);
+        } else {
+            task.packRows();
+        }
+    }
+
+    /**
+     * 把 [fromY, toY) 行的 BGR（或灰度）字节打包成 ARGB 或亮度，像素多时对半拆分并行
+     */
+    private static class PackTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 3412709826117324513L;
+
+        private final byte[] pixelBytes;
+
+        /**
+         * 源图每行字节数，可能包含行尾对齐填充
+         */
+        private final int widthStep;
+
+        private final int channels;
+
+        private final int width;
+
+        /**
+         * 目标图每行像素数
+         */
+        private final int targetWidth;
+
+        private final int[] rgbArray;
+
+        private final byte[] lumaArray;
+
+        private final int fromY;
+
+        private final int toY;
+
+        PackTask(byte[] pixelBytes, int widthStep, int channels, int width, int targetWidth, int[] rgbArray,
+                byte[] lumaArray, int fromY, int toY) {
+            this.pixelBytes = pixelBytes;
+            this.widthStep = widthStep;
+            this.channels = channels;
+            this.width = width;
+            this.targetWidth = targetWidth;
+            this.rgbArray = rgbArray;
+            this.lumaArray = lumaArray;
+            this.fromY = fromY;
+            this.toY = toY;
+        }
+
+        @Override
+        protected void compute() {
+            if (width * (toY - fromY) <= SEGMENT_PIXELS * 2 || toY - fromY < 2) {
+                packRows();
+                return;
+            }
+            int middleY = (fromY + toY) >>> 1;
+            invokeAll(segment(fromY, middleY), segment(middleY, toY));
+        }
+
+        private PackTask segment(int from, int to) {
+            return new PackTask(pixelBytes, widthStep, channels, width, targetWidth, rgbArray, lumaArray, from, to);
+        }
+
+        void packRows() {
+            byte[] bytes = pixelBytes;
+            for (int y = fromY; y < toY; y++) {
+                int byteIdx = y * widthStep;
+                int pixelIdx = y * targetWidth;
+                int pixelEnd = pixelIdx + width;
+                if (channels == 1) {
+                    // 已经是灰度图
+                    if (lumaArray != null) {
+                        System.arraycopy(bytes, byteIdx, lumaArray, pixelIdx, width);
+                    } else {
+                        for (; pixelIdx < pixelEnd; pixelIdx++, byteIdx++) {
+                            int gray = bytes[byteIdx] & 0xFF;
+                            rgbArray[pixelIdx] = 0xFF000000 | (gray << 16) | (gray << 8) | gray;
+                        }
+                    }
+                } else if (lumaArray != null) {
+                    for (; pixelIdx < pixelEnd; pixelIdx++, byteIdx += channels) {
+                        int blue = bytes[byteIdx] & 0xFF;
+                        int green = bytes[byteIdx + 1] & 0xFF;
+                        int red = bytes[byteIdx + 2] & 0xFF;
+                        lumaArray[pixelIdx] = (byte) LumaImage.luma(red, green, blue);
+                    }
+                } else {
+                    for (; pixelIdx < pixelEnd; pixelIdx++, byteIdx += channels) {
+                        // & 0xFF: 字节按无符号取值，否则大于127的通道值会符号扩展，污染其它通道
+                        rgbArray[pixelIdx] = 0xFF000000 | ((bytes[byteIdx + 2] & 0xFF) << 16)
+                                | ((bytes[byteIdx + 1] & 0xFF) << 8) | (bytes[byteIdx] & 0xFF);
+                    }
+                }
+            }
         }
     }
 
@@ -0,0 +1,86 @@
+package com.downgoon.video.image;
+
+/**
+ * a single plane luminance (Y) image, one unsigned byte per pixel.
+ * <p>
+ * it takes a quarter of the memory of an ARGB {@link MatrixImage} and is
+ * enough for motion detection on most scenes where chroma does not matter.
+ *
+ * @author downgoon@qq.com
+ * @since 2026-10-17
+ */
+public class LumaImage {
+
+    private final int width;
+
+    private final int height;
+
+    /**
+     * luminance values, row by row, {@code y * width + x}
+     */
+    private final byte[] lumaArray;
+
+    /**
+     * Constructor to blank lumaImage, passing the size of lumaImage
+     *
+     * @param width  width
+     * @param height height
+     */
+    public LumaImage(int width, int height) {
+        this(width, height, new byte[width * height]);
+    }
+
+    public LumaImage(int width, int height, byte[] lumaArray) {
+        if (lumaArray.length < width * height) {
+            throw new IllegalArgumentException("luma array too small: " + lumaArray.length + " < " + width * height);
+        }
+        this.width = width;
+        this.height = height;
+        this.lumaArray = lumaArray;
+    }
+
+    /**
+     * @return byte luminance array for the entire lumaImage.
+     */
+    public byte[] getLumaArray() {
+        return lumaArray;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Gets the luminance in the x and y position
+     *
+     * @param x coordinate x
+     * @param y coordinate y
+     * @return luminance between 0 and 255
+     */
+    public int getLuma(int x, int y) {
+        return lumaArray[y * width + x] & 0xFF;
+    }
+
+    /**
+     * Sets the luminance in the x and y position
+     *
+     * @param x    coordinate x
+     * @param y    coordinate y
+     * @param luma luminance between 0 and 255
+     */
+    public void setLuma(int x, int y, int luma) {
+        lumaArray[y * width + x] = (byte) luma;
+    }
+
+    /**
+     * luminance of a rgb color, ITU-R BT.601 weights in 8 bits fixed point
+     */
+    public static int luma(int red, int green, int blue) {
+        return (77 * red + 150 * green + 29 * blue + 128) >> 8;
+    }
+
+}
@@ -3,16 +3,27 @@ package com.downgoon.video.image;
 
 import java.awt.Color;
 import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * a rgb image supporting some editing features such as
  * {@link #drawRect(int, int, int, int, Color)} and
  * {@link #fillRect(int, int, int, int, Color)}
+ * <p>
+ * the rgb array is the very {@link DataBufferInt} of the inner INT_ARGB
+ * {@link BufferedImage}, so edits on the array are visible in the image at
+ * once and nothing needs to be flushed.
  *
  * @author downgoon@qq.com
  * @since 2016-06-09
  */
-public class MatrixImage implements Cloneable {
+public class MatrixImage implements PixelImage, Cloneable {
 
     /**
      * inner image holder
@@ -20,7 +31,7 @@ public class MatrixImage implements Cloneable {
     private BufferedImage bufferedImage;
 
     /**
-     * buffered rgb array for the inner {@link BufferedImage}
+     * rgb array shared with the raster of the inner {@link BufferedImage}
      */
     private int[] rgbArray;
 
@@ -28,24 +39,38 @@ public class MatrixImage implements Cloneable {
 
     private int height;
 
+    /**
+     * the pool this image is borrowed from, null if not pooled
+     */
+    private volatile FramePool pool;
+
+    /**
+     * reference count of a pooled image, it is returned to the pool when
+     * the count drops to zero
+     */
+    private final AtomicInteger refCount = new AtomicInteger();
+
     /**
      * Constructor using a matrixImage in memory
      *
      * @param image Image
      */
     public MatrixImage(BufferedImage image) {
-        this.bufferedImage = image;
-        this.width = image.getWidth();
-        this.height = image.getHeight();
-        loadRgbArrayBuffer();
+        setBufferedImage(image);
     }
 
+    /**
+     * Constructor wrapping an ARGB array without copying it
+     *
+     * @param width    width
+     * @param height   height
+     * @param rgbArray ARGB pixels, row by row, shared with the image
+     */
     public MatrixImage(int width, int height, int[] rgbArray) {
-        this.bufferedImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
         this.width = width;
         this.height = height;
         this.rgbArray = rgbArray;
-        flushRgbArrayBuffer();
+        this.bufferedImage = wrapRgbArray(width, height, rgbArray);
     }
 
     /**
@@ -59,6 +84,45 @@ public class MatrixImage implements Cloneable {
     }
 
 
+    /**
+     * borrowed from the pool, the reference count starts at one
+     */
+    void attach(FramePool framePool) {
+        this.pool = framePool;
+        this.refCount.set(1);
+    }
+
+    /**
+     * add a holder to a pooled image, no effect on an image not from a
+     * {@link FramePool}
+     *
+     * @return this image
+     */
+    public MatrixImage retain() {
+        if (pool != null && refCount.getAndIncrement() <= 0) {
+            throw new IllegalStateException("retain a released frame");
+        }
+        return this;
+    }
+
+    /**
+     * a holder is done with a pooled image, which goes back to its
+     * {@link FramePool} when the last holder releases it. no effect on an
+     * image not from a pool.
+     */
+    public void release() {
+        FramePool framePool = pool;
+        if (framePool == null) {
+            return;
+        }
+        int count = refCount.decrementAndGet();
+        if (count == 0) {
+            framePool.recycle(this);
+        } else if (count < 0) {
+            throw new IllegalStateException("release a released frame");
+        }
+    }
+
     /**
      * @return integer color array for the entire matrixImage.
      */
@@ -71,33 +135,42 @@ public class MatrixImage implements Cloneable {
      **/
     public void setRgbArray(int[] arr) {
         rgbArray = arr;
+        bufferedImage = wrapRgbArray(width, height, arr);
     }
 
     /**
-     * load rgb array from the inner {@link BufferedImage} and buffer it in
-     * memory in order to enhance performances on subsequent image editing
-     * actions such as {@link #drawRect(int, int, int, int, Color)} and
-     * {@link #fillRect(int, int, int, int, Color)}
+     * build an INT_ARGB {@link BufferedImage} whose raster is backed by the
+     * given array, no pixel is copied
      */
-    private void loadRgbArrayBuffer() {
-        bufferedImage.getRGB(0, 0, bufferedImage.getWidth(), bufferedImage.getHeight(), null, 0,
-                bufferedImage.getWidth());
+    private static BufferedImage wrapRgbArray(int width, int height, int[] rgbArray) {
+        DirectColorModel colorModel = (DirectColorModel) ColorModel.getRGBdefault();
+        DataBufferInt dataBuffer = new DataBufferInt(rgbArray, width * height);
+        WritableRaster raster = WritableRaster.createPackedRaster(dataBuffer, width, height, width,
+                colorModel.getMasks(), null);
+        return new BufferedImage(colorModel, raster, false, null);
     }
 
     /**
-     * flush the buffered rgb array into the inner {@link BufferedImage}, it is
-     * often called in image editing actions such as
-     * {@link #drawRect(int, int, int, int, Color)}
+     * the rgb array of an INT_ARGB image whose raster is one tightly packed
+     * int bank, null for any other image
      */
-    private void flushRgbArrayBuffer() {
-        int w = bufferedImage.getWidth();
-        bufferedImage.setRGB(0, 0, bufferedImage.getWidth(), bufferedImage.getHeight(), rgbArray, 0, w);
+    private static int[] aliasRgbArray(BufferedImage image) {
+        if (image.getType() != BufferedImage.TYPE_INT_ARGB) {
+            return null;
+        }
+        DataBuffer dataBuffer = image.getRaster().getDataBuffer();
+        if (!(dataBuffer instanceof DataBufferInt) || dataBuffer.getNumBanks() != 1 || dataBuffer.getOffset() != 0
+                || image.getRaster().getParent() != null
+                || !(image.getSampleModel() instanceof SinglePixelPackedSampleModel)
+                || ((SinglePixelPackedSampleModel) image.getSampleModel()).getScanlineStride() != image.getWidth()) {
+            return null;
+        }
+        return ((DataBufferInt) dataBuffer).getData();
     }
 
     public static void copyRgbArray(MatrixImage sourceImg, MatrixImage targetImg) {
         System.arraycopy(sourceImg.getRgbArray(), 0, targetImg.getRgbArray(), 0,
                 sourceImg.getWidth() * sourceImg.getHeight());
-        // targetImg.flushRgbArrayBuffer();
     }
 
     /**
@@ -231,10 +304,18 @@ public class MatrixImage implements Cloneable {
      * @param image a buffered matrixImage
      */
     public void setBufferedImage(BufferedImage image) {
-        this.bufferedImage = image;
         this.width = image.getWidth();
         this.height = image.getHeight();
-        loadRgbArrayBuffer();
+        int[] alias = aliasRgbArray(image);
+        if (alias != null) {
+            this.bufferedImage = image;
+            this.rgbArray = alias;
+        } else {
+            // slow path: other image types are converted into a new INT_ARGB copy,
+            // edits are then made on the copy rather than on the given image
+            this.rgbArray = image.getRGB(0, 0, width, height, null, 0, width);
+            this.bufferedImage = wrapRgbArray(width, height, rgbArray);
+        }
     }
 
     /**
@@ -273,21 +354,20 @@ public class MatrixImage implements Cloneable {
      * draw a rectangle into the image at the specified position marked (x,y)
      */
     public void drawRect(int x, int y, int w, int h, Color c) {
-        drawRect(x, y, w, h, c, true);
+        drawRect(x, y, w, h, c.getRGB());
     }
 
     /**
      * draw a thick rectangle
      */
     public void drawRect(int x, int y, int w, int h, int thickness, Color c) {
+        int color = c.getRGB();
         for (int i = 0; i < thickness; i++) {
-            drawRect(x + i, y + i, w - (i * 2), h - (i * 2), c, false);
+            drawRect(x + i, y + i, w - (i * 2), h - (i * 2), color);
         }
-        flushRgbArrayBuffer();
     }
 
-    private void drawRect(int x, int y, int w, int h, Color c, boolean autoFlush) {
-        int color = c.getRGB();
+    private void drawRect(int x, int y, int w, int h, int color) {
         for (int i = x; i < x + w; i++) {
             setColor(i, y, color);
             setColor(i, y + (h - 1), color);
@@ -297,10 +377,6 @@ public class MatrixImage implements Cloneable {
             setColor(x, i, color);
             setColor(x + (w - 1), i, color);
         }
-        if (autoFlush) {
-            flushRgbArrayBuffer();
-        }
-
     }
 
     /**
@@ -315,7 +391,6 @@ public class MatrixImage implements Cloneable {
                 }
             }
         }
-        flushRgbArrayBuffer();
     }
 
     /**
@@ -346,11 +421,7 @@ public class MatrixImage implements Cloneable {
     @Override
     public MatrixImage clone() {
         MatrixImage newMarvinImg = new MatrixImage(getWidth(), getHeight());
-        BufferedImage newImage = new BufferedImage(bufferedImage.getWidth(), bufferedImage.getHeight(),
-                BufferedImage.TYPE_INT_ARGB);
-        newMarvinImg.setBufferedImage(newImage);
         MatrixImage.copyRgbArray(this, newMarvinImg);
-        newMarvinImg.flushRgbArrayBuffer();
         return newMarvinImg;
     }
 }
@@ -0,0 +1,49 @@
+package com.downgoon.video.image;
+
+import java.awt.Color;
+
+/**
+ * the accessor surface shared by ARGB images on the heap ({@link MatrixImage})
+ * and off the heap ({@link DirectMatrixImage}): read and write single
+ * pixels and mark rectangles, no matter where the pixels live.
+ *
+ * @author downgoon@qq.com
+ * @since 2026-10-17
+ */
+public interface PixelImage {
+
+    int getWidth();
+
+    int getHeight();
+
+    /**
+     * ARGB color at the position (x,y)
+     */
+    int getColor(int x, int y);
+
+    int alpha(int x, int y);
+
+    int rgbR(int x, int y);
+
+    int rgbG(int x, int y);
+
+    int rgbB(int x, int y);
+
+    void setColor(int x, int y, int color);
+
+    /**
+     * draw a rectangle into the image at the specified position marked (x,y)
+     */
+    void drawRect(int x, int y, int w, int h, Color c);
+
+    /**
+     * draw a thick rectangle
+     */
+    void drawRect(int x, int y, int w, int h, int thickness, Color c);
+
+    /**
+     * fill a rectangle
+     */
+    void fillRect(int x, int y, int w, int h, Color c);
+
+}
@@ -0,0 +1,311 @@
+package com.downgoon.video.index;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.downgoon.video.util.Rect;
+
+/**
+ * 区块运动索引的查询：回答"某段时间内，画面的某个区域有没有运动、什么时候有"，只扫描索引，不需要重新解码视频。
+ * <p>
+ * 打开时把索引文件映射到内存，扫描一遍记录头（跳过记录体），每 {@value #CHECKPOINT_INTERVAL} 帧记一个检查点，
+ * 查询时二分查找到起始时间附近的检查点再顺序扫描。时间范围之外的记录整条跳过；
+ * 范围之内的记录逐段解码游程，与查询区域覆盖的区块比较，一旦相交就不再解码这一帧剩下的段。
+ * <p>
+ * 打开之后是一份快照，写入器之后追加的帧需要重新打开才能查到。查询只读，可以多线程并发。文件大小限于 2GB。
+ *
+ * @author downgoon@qq.com
+ * @since 2026-10-17
+ */
+public class BlockMotionIndex {
+
+    /**
+     * 每隔多少帧记一个检查点
+     */
+    static final int CHECKPOINT_INTERVAL = 1024;
+
+    private final MappedByteBuffer buffer;
+
+    private final int pixelWidth;
+
+    private final int pixelHeight;
+
+    private final int blockSize;
+
+    private final int blockWidth;
+
+    private final int blockHeight;
+
+    /**
+     * 最后一条完整记录之后的位置
+     */
+    private int limit;
+
+    private long frameCount;
+
+    private long firstTimestamp;
+
+    private long lastTimestamp;
+
+    /**
+     * 检查点：记录的时间戳、记录的偏移、上一条记录的时间戳（增量的基准）
+     */
+    private long[] checkpointTimestamps = new long[16];
+
+    private int[] checkpointOffsets = new int[16];
+
+    private long[] checkpointBases = new long[16];
+
+    private int checkpointCount;
+
+    private BlockMotionIndex(MappedByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.limit() < BlockMotionIndexWriter.HEADER_BYTES
+                || buffer.getInt(0) != BlockMotionIndexWriter.MAGIC) {
+            throw new IOException("not a block motion index");
+        }
+        if (buffer.getInt(4) != BlockMotionIndexWriter.VERSION) {
+            throw new IOException("unsupported block motion index version: " + buffer.getInt(4));
+        }
+        this.pixelWidth = buffer.getInt(8);
+        this.pixelHeight = buffer.getInt(12);
+        this.blockSize = buffer.getInt(16);
+        this.blockWidth = buffer.getInt(20);
+        this.blockHeight = buffer.getInt(24);
+        buildCheckpoints();
+    }
+
+    /**
+     * 打开索引文件
+     */
+    public static BlockMotionIndex open(File file) throws IOException {
+        try (RandomAccessFile indexFile = new RandomAccessFile(file, "r")) {
+            if (indexFile.length() > Integer.MAX_VALUE) {
+                throw new IOException("index larger than 2GB: " + file);
+            }
+            MappedByteBuffer buffer = indexFile.getChannel().map(FileChannel.MapMode.READ_ONLY, 0,
+                    indexFile.length());
+            return new BlockMotionIndex(buffer);
+        }
+    }
+
+    /**
+     * 扫描一遍记录头，统计帧数、首尾时间戳，并记检查点。末尾不完整的记录（写入中断）忽略。
+     */
+    private void buildCheckpoints() {
+        Cursor cursor = new Cursor(buffer, BlockMotionIndexWriter.HEADER_BYTES);
+        int end = buffer.limit();
+        long timestamp = 0;
+        limit = cursor.position;
+        while (cursor.position < end) {
+            int recordOffset = cursor.position;
+            long base = timestamp;
+            long delta = cursor.readVarint(end);
+            long bodyLength = cursor.readVarint(end);
+            if (delta < 0 || bodyLength < 0 || cursor.position + bodyLength > end) {
+                break;
+            }
+            timestamp = base + delta;
+            if (frameCount % CHECKPOINT_INTERVAL == 0) {
+                addCheckpoint(timestamp, recordOffset, base);
+            }
+            if (frameCount == 0) {
+                firstTimestamp = timestamp;
+            }
+            frameCount++;
+            lastTimestamp = timestamp;
+            cursor.position += (int) bodyLength;
+            limit = cursor.position;
+        }
+    }
+
+    private void addCheckpoint(long timestamp, int offset, long base) {
+        if (checkpointCount == checkpointTimestamps.length) {
+            checkpointTimestamps = Arrays.copyOf(checkpointTimestamps, checkpointCount * 2);
+            checkpointOffsets = Arrays.copyOf(checkpointOffsets, checkpointCount * 2);
+            checkpointBases = Arrays.copyOf(checkpointBases, checkpointCount * 2);
+        }
+        checkpointTimestamps[checkpointCount] = timestamp;
+        checkpointOffsets[checkpointCount] = offset;
+        checkpointBases[checkpointCount] = base;
+        checkpointCount++;
+    }
+
+    /**
+     * 时间范围 [from, to] 内，区域 region 中有运动的帧数
+     *
+     * @param region 像素坐标，x2、y2 不含；为 null 时表示整幅画面
+     */
+    public long countMotionFrames(long from, long to, Rect region) {
+        return scan(from, to, region, null, 0L);
+    }
+
+    /**
+     * 时间范围 [from, to] 内，区域 region 中有运动的时间段
+     *
+     * @param region 像素坐标，x2、y2 不含；为 null 时表示整幅画面
+     * @param maxGap 两帧有运动的时间间隔不超过 maxGap 时合并为同一段
+     */
+    public List<MotionSpan> findMotion(long from, long to, Rect region, long maxGap) {
+        List<MotionSpan> spans = new ArrayList<>();
+        scan(from, to, region, spans, maxGap);
+        return spans;
+    }
+
+    /**
+     * @return 有运动的帧数
+     */
+    private long scan(long from, long to, Rect region, List<MotionSpan> spans, long maxGap) {
+        if (frameCount == 0 || to < from) {
+            return 0;
+        }
+
+        // 查询区域覆盖的区块，含两端
+        int bx1 = 0, by1 = 0, bx2 = blockWidth - 1, by2 = blockHeight - 1;
+        if (region != null) {
+            bx1 = Math.max(0, region.getX1() / blockSize);
+            by1 = Math.max(0, region.getY1() / blockSize);
+            bx2 = Math.min(blockWidth - 1, (region.getX2() - 1) / blockSize);
+            by2 = Math.min(blockHeight - 1, (region.getY2() - 1) / blockSize);
+            if (bx1 > bx2 || by1 > by2) {
+                return 0;
+            }
+        }
+        // 游程起点超过这个区块就不可能再与区域相交
+        int lastBlock = by2 * blockWidth + bx2;
+
+        // 从最后一个时间戳小于 from 的检查点开始：时间戳等于 from 的帧可能在它之后、下一个检查点之前
+        int checkpoint = Arrays.binarySearch(checkpointTimestamps, 0, checkpointCount, from);
+        if (checkpoint < 0) {
+            checkpoint = -checkpoint - 1;
+        }
+        while (checkpoint > 0 && checkpointTimestamps[checkpoint - 1] >= from) {
+            checkpoint--;
+        }
+        checkpoint = Math.max(0, checkpoint - 1);
+
+        Cursor cursor = new Cursor(buffer, checkpointOffsets[checkpoint]);
+        long timestamp = checkpointBases[checkpoint];
+        long motionFrames = 0;
+        MotionSpan span = null;
+        while (cursor.position < limit) {
+            timestamp += cursor.readVarint(limit);
+            int bodyLength = (int) cursor.readVarint(limit);
+            int bodyEnd = cursor.position + bodyLength;
+            if (timestamp > to) {
+                break;
+            }
+            if (timestamp >= from && intersects(cursor, bodyEnd, bx1, by1, bx2, by2, lastBlock)) {
+                motionFrames++;
+                if (spans != null) {
+                    if (span != null && timestamp - span.getEnd() <= maxGap) {
+                        span.extend(timestamp);
+                    } else {
+                        span = new MotionSpan(timestamp);
+                        spans.add(span);
+                    }
+                }
+            }
+            cursor.position = bodyEnd;
+        }
+        return motionFrames;
+    }
+
+    /**
+     * 逐段解码一帧的游程，判断是否有运动区块落在 [bx1, bx2] x [by1, by2] 内
+     */
+    private boolean intersects(Cursor cursor, int bodyEnd, int bx1, int by1, int bx2, int by2, int lastBlock) {
+        long runs = cursor.readVarint(bodyEnd);
+        int runStart = 0;
+        for (long r = 0; r < runs; r++) {
+            runStart += (int) cursor.readVarint(bodyEnd);
+            int runEnd = runStart + (int) cursor.readVarint(bodyEnd);
+            if (runStart > lastBlock) {
+                return false;
+            }
+
+            // 一段可能跨越多行，逐行与区域比较
+            int rowStart = runStart / blockWidth;
+            int rowEnd = runEnd / blockWidth;
+            for (int row = Math.max(rowStart, by1); row <= Math.min(rowEnd, by2); row++) {
+                int colStart = row == rowStart ? runStart % blockWidth : 0;
+                int colEnd = row == rowEnd ? runEnd % blockWidth : blockWidth - 1;
+                if (colStart <= bx2 && colEnd >= bx1) {
+                    return true;
+                }
+            }
+            runStart = runEnd + 1;
+        }
+        return false;
+    }
+
+    public int getPixelWidth() {
+        return pixelWidth;
+    }
+
+    public int getPixelHeight() {
+        return pixelHeight;
+    }
+
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    public long getFrameCount() {
+        return frameCount;
+    }
+
+    public long getFirstTimestamp() {
+        return firstTimestamp;
+    }
+
+    public long getLastTimestamp() {
+        return lastTimestamp;
+    }
+
+    /**
+     * 有效记录的字节数，含文件头
+     */
+    public long getSizeBytes() {
+        return limit;
+    }
+
+    /**
+     * 在映射内存上按位置读取变长整数，每次查询一个，查询之间互不影响
+     */
+    private static class Cursor {
+
+        private final MappedByteBuffer buffer;
+
+        int position;
+
+        Cursor(MappedByteBuffer buffer, int position) {
+            this.buffer = buffer;
+            this.position = position;
+        }
+
+        /**
+         * @return 读到 end 仍未结束时返回 -1
+         */
+        long readVarint(int end) {
+            long value = 0;
+            int shift = 0;
+            while (position < end) {
+                byte b = buffer.get(position++);
+                value |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+                shift += 7;
+            }
+            return -1;
+        }
+    }
+
+}
@@ -0,0 +1,243 @@
+package com.downgoon.video.index;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * 区块运动索引的写入器：逐帧追加运动区块位图，写成一个只追加的索引文件，供 {@link BlockMotionIndex} 按时间和区域查询。
+ * <p>
+ * 文件格式：
+ * <pre>
+ * 文件头：magic "VMBI"、版本、像素宽、像素高、区块粒度、区块列数、区块行数（int）
+ * 每帧一条记录：
+ *   varint 时间戳增量（相对上一帧，第一帧相对0）
+ *   varint 记录体字节数
+ *   记录体：varint 连续运动区块段数，每段 varint 与上一段末尾的间隔、varint 段长 - 1
+ * </pre>
+ * 位图按行优先把区块编号，连续的运动区块压缩成一段（游程编码）。没有运动的帧只占3个字节左右，
+ * 一块运动区域每行一段，远小于视频本身。记录体带长度，查询时不需要解码的记录可以整条跳过。
+ * <p>
+ * 只允许一个线程追加。已有的索引文件会接着追加，文件头必须一致；末尾不完整的记录（写入中断）先截掉再追加。
+ *
+ * @author downgoon@qq.com
+ * @since 2026-10-17
+ */
+public class BlockMotionIndexWriter implements Closeable, Flushable {
+
+    static final int MAGIC = 0x564D4249;
+
+    static final int VERSION = 1;
+
+    static final int HEADER_BYTES = 28;
+
+    private final File file;
+
+    private final int blockWidth;
+
+    private final int blockHeight;
+
+    private final OutputStream out;
+
+    private long lastTimestamp;
+
+    /**
+     * 编码一条记录体用的缓冲区，逐帧复用
+     */
+    private byte[] body = new byte[256];
+
+    private int bodyLength;
+
+    private final byte[] head = new byte[20];
+
+    private long frameCount;
+
+    private long bytesWritten;
+
+    /**
+     * @param file        索引文件，已存在时接着追加
+     * @param pixelWidth  画面宽度
+     * @param pixelHeight 画面高度
+     * @param blockSize   检测器的区块粒度
+     */
+    public BlockMotionIndexWriter(File file, int pixelWidth, int pixelHeight, int blockSize) throws IOException {
+        this.file = file;
+        this.blockWidth = pixelWidth / blockSize;
+        this.blockHeight = pixelHeight / blockSize;
+
+        boolean append = file.isFile() && file.length() > 0;
+        long validLength = 0;
+        if (append) {
+            BlockMotionIndex existing = BlockMotionIndex.open(file);
+            if (existing.getPixelWidth() != pixelWidth || existing.getPixelHeight() != pixelHeight
+                    || existing.getBlockSize() != blockSize) {
+                throw new IOException("index " + file + " was written for " + existing.getPixelWidth() + "x"
+                        + existing.getPixelHeight() + "/" + existing.getBlockSize());
+            }
+            this.lastTimestamp = existing.getLastTimestamp();
+            this.frameCount = existing.getFrameCount();
+            validLength = existing.getSizeBytes();
+        }
+
+        FileOutputStream fileOut = new FileOutputStream(file, append);
+        if (append && fileOut.getChannel().size() > validLength) {
+            // 上次写入中断留下的不完整记录：先截掉，否则新记录接在残缺的记录后面，之后的记录都无法解析
+            fileOut.getChannel().truncate(validLength);
+        }
+        this.out = new BufferedOutputStream(fileOut, 64 * 1024);
+        if (!append) {
+            DataOutputStream header = new DataOutputStream(out);
+            header.writeInt(MAGIC);
+            header.writeInt(VERSION);
+            header.writeInt(pixelWidth);
+            header.writeInt(pixelHeight);
+            header.writeInt(blockSize);
+            header.writeInt(blockWidth);
+            header.writeInt(blockHeight);
+            bytesWritten = HEADER_BYTES;
+        }
+    }
+
+    /**
+     * 位图需要的 long 个数，与 {@code MotionDetector#copyMotionBlocks} 一致
+     */
+    public int getBitmapLength() {
+        return (blockWidth * blockHeight + 63) >>> 6;
+    }
+
+    /**
+     * 追加一帧的运动区块位图
+     *
+     * @param timestamp 时间戳，不小于上一帧，通常为毫秒
+     * @param bits      运动区块位图，见 {@code MotionDetector#copyMotionBlocks}
+     */
+    public void append(long timestamp, long[] bits) throws IOException {
+        if (timestamp < lastTimestamp) {
+            throw new IllegalArgumentException("timestamp " + timestamp + " before last " + lastTimestamp);
+        }
+
+        encodeRuns(bits);
+
+        int headLength = putVarint(head, 0, timestamp - lastTimestamp);
+        headLength = putVarint(head, headLength, bodyLength);
+        out.write(head, 0, headLength);
+        out.write(body, 0, bodyLength);
+
+        lastTimestamp = timestamp;
+        frameCount++;
+        bytesWritten += headLength + bodyLength;
+    }
+
+    /**
+     * 把位图编码成游程写入 body：先写段数，再逐段写间隔和长度
+     */
+    private void encodeRuns(long[] bits) {
+        int blocks = blockWidth * blockHeight;
+        // 段数最后才知道，先在开头留出5个字节，编码完再挪到前面
+        bodyLength = 5;
+        int runs = 0;
+        int lastEnd = 0;
+        int i = nextSetBit(bits, 0, blocks);
+        while (i < blocks) {
+            int end = nextClearBit(bits, i + 1, blocks);
+            ensureBody(10);
+            bodyLength = putVarint(body, bodyLength, i - lastEnd);
+            bodyLength = putVarint(body, bodyLength, end - i - 1);
+            runs++;
+            lastEnd = end;
+            i = nextSetBit(bits, end, blocks);
+        }
+
+        int runsLength = putVarint(head, 0, runs);
+        System.arraycopy(body, 5, body, runsLength, bodyLength - 5);
+        System.arraycopy(head, 0, body, 0, runsLength);
+        bodyLength = bodyLength - 5 + runsLength;
+    }
+
+    private void ensureBody(int more) {
+        if (bodyLength + more > body.length) {
+            byte[] larger = new byte[body.length * 2];
+            System.arraycopy(body, 0, larger, 0, bodyLength);
+            body = larger;
+        }
+    }
+
+    private static int nextSetBit(long[] bits, int from, int limit) {
+        int word = from >>> 6;
+        if (word >= bits.length) {
+            return limit;
+        }
+        long w = bits[word] & (-1L << from);
+        while (true) {
+            if (w != 0) {
+                return Math.min(limit, (word << 6) + Long.numberOfTrailingZeros(w));
+            }
+            if (++word >= bits.length) {
+                return limit;
+            }
+            w = bits[word];
+        }
+    }
+
+    private static int nextClearBit(long[] bits, int from, int limit) {
+        int word = from >>> 6;
+        if (word >= bits.length) {
+            return limit;
+        }
+        long w = ~bits[word] & (-1L << from);
+        while (true) {
+            if (w != 0) {
+                return Math.min(limit, (word << 6) + Long.numberOfTrailingZeros(w));
+            }
+            if (++word >= bits.length) {
+                return limit;
+            }
+            w = ~bits[word];
+        }
+    }
+
+    /**
+     * 无符号 LEB128 变长整数
+     *
+     * @return 写完后的位置
+     */
+    static int putVarint(byte[] buffer, int position, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+        return position;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public long getFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * 本次打开以来写入的字节数
+     */
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+}
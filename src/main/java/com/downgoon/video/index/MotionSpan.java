@@ -0,0 +1,51 @@
+package com.downgoon.video.index;
+
+/**
+ * 一段在查询区域内有运动的时间：起止时间戳（含），以及其中有运动的帧数
+ *
+ * @author downgoon@qq.com
+ * @since 2026-10-17
+ */
+public class MotionSpan {
+
+    private final long start;
+
+    private long end;
+
+    private long frames;
+
+    MotionSpan(long start) {
+        this.start = start;
+        this.end = start;
+        this.frames = 1;
+    }
+
+    void extend(long timestamp) {
+        this.end = timestamp;
+        this.frames++;
+    }
+
+    public long getStart() {
+        return start;
+    }
+
+    /**
+     * 最后一个有运动的帧的时间戳（含）
+     */
+    public long getEnd() {
+        return end;
+    }
+
+    public long getFrames() {
+        return frames;
+    }
+
+    /**
+     * 紧凑的文本格式：{@code 起始时间戳 结束时间戳 帧数}
+     */
+    @Override
+    public String toString() {
+        return start + " " + end + " " + frames;
+    }
+
+}
@@ -0,0 +1,312 @@
+package com.downgoon.video.journal;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.downgoon.video.image.DirectMatrixImage;
+import com.downgoon.video.image.MatrixImage;
+
+/**
+ * 帧日志：把原始像素逐帧追加到预先分配好大小的内存映射段文件中，用于反复回放同一段画面，调校色差阈值、区块粒度等参数。
+ * <p>
+ * 每个段由两个文件组成：
+ * <ul>
+ * <li>{@code 00000001.frames}：预分配 segmentBytes 字节并整体映射，每帧一条记录，
+ * 记录头为宽、高（int）和时间戳（long），随后是 宽*高 个本机字节序的 ARGB int；</li>
+ * <li>{@code 00000001.index}：每帧一条 {@value #INDEX_ENTRY_BYTES} 字节的索引，依次为时间戳、记录在段文件中的偏移（long）、宽、高（int）。</li>
+ * </ul>
+ * 当前段放不下下一帧时滚动到新段；滚动时按总大小和存活时间清理最旧的段。
+ * 追加一帧只是一次整块内存复制，不编码、不分配内存。只允许一个线程追加。
+ * 用 {@link JournalReplayCamera} 回放。
+ *
+ * @author downgoon@qq.com
+ * @since 2026-10-17
+ */
+public class FrameJournal implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(FrameJournal.class);
+
+    static final String FRAMES_SUFFIX = ".frames";
+
+    static final String INDEX_SUFFIX = ".index";
+
+    /**
+     * 记录头：宽、高、时间戳
+     */
+    static final int RECORD_HEADER_BYTES = 16;
+
+    static final int INDEX_ENTRY_BYTES = 24;
+
+    private final File dir;
+
+    private final long segmentBytes;
+
+    /**
+     * 所有段的总大小上限，0表示不限
+     */
+    private long maxTotalBytes;
+
+    /**
+     * 段的最长存活时间，0表示不限
+     */
+    private long maxAgeMillis;
+
+    private int segmentSeq;
+
+    private RandomAccessFile segmentFile;
+
+    private MappedByteBuffer segmentBuffer;
+
+    /**
+     * 段文件的 int 视图，写像素用
+     */
+    private IntBuffer segmentInts;
+
+    private FileChannel indexChannel;
+
+    private final ByteBuffer indexEntry = ByteBuffer.allocate(INDEX_ENTRY_BYTES);
+
+    /**
+     * 当前段下一条记录的偏移
+     */
+    private long writeOffset;
+
+    private long appendedCount;
+
+    private long deletedSegmentCount;
+
+    /**
+     * @param dir          段文件目录，已有的段保留，新段的编号接在后面
+     * @param segmentBytes 每个段文件的大小，至少能放下一帧
+     */
+    public FrameJournal(File dir, long segmentBytes) throws IOException {
+        if (segmentBytes <= RECORD_HEADER_BYTES || segmentBytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("segment bytes out of range: " + segmentBytes);
+        }
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("cannot create journal directory: " + dir);
+        }
+        this.dir = dir;
+        this.segmentBytes = segmentBytes;
+
+        File[] segments = listSegments(dir);
+        if (segments.length > 0) {
+            segmentSeq = segmentSeq(segments[segments.length - 1]);
+        }
+    }
+
+    /**
+     * 设置段的保留策略，在滚动到新段时执行
+     *
+     * @param maxTotalBytes 所有段的总大小上限，0表示不限
+     * @param maxAgeMillis  段的最长存活时间（按最后修改时间），0表示不限
+     */
+    public void setRetention(long maxTotalBytes, long maxAgeMillis) {
+        this.maxTotalBytes = maxTotalBytes;
+        this.maxAgeMillis = maxAgeMillis;
+    }
+
+    /**
+     * 追加一帧
+     *
+     * @param frame     帧
+     * @param timestamp 时间戳，毫秒
+     */
+    public void append(MatrixImage frame, long timestamp) throws IOException {
+        int pixels = frame.getWidth() * frame.getHeight();
+        long recordOffset = beginRecord(frame.getWidth(), frame.getHeight(), timestamp);
+        segmentInts.position((int) ((recordOffset + RECORD_HEADER_BYTES) >> 2));
+        segmentInts.put(frame.getRgbArray(), 0, pixels);
+        endRecord(recordOffset, frame.getWidth(), frame.getHeight(), timestamp);
+    }
+
+    /**
+     * 追加一帧堆外的帧，本地内存之间整块复制
+     *
+     * @param frame     帧
+     * @param timestamp 时间戳，毫秒
+     */
+    public void append(DirectMatrixImage frame, long timestamp) throws IOException {
+        int pixels = frame.getWidth() * frame.getHeight();
+        long recordOffset = beginRecord(frame.getWidth(), frame.getHeight(), timestamp);
+        IntBuffer source = frame.getRgbBuffer().duplicate();
+        source.clear().limit(pixels);
+        segmentInts.position((int) ((recordOffset + RECORD_HEADER_BYTES) >> 2));
+        segmentInts.put(source);
+        endRecord(recordOffset, frame.getWidth(), frame.getHeight(), timestamp);
+    }
+
+    /**
+     * 写记录头，必要时滚动到新段
+     *
+     * @return 记录的偏移
+     */
+    private long beginRecord(int width, int height, long timestamp) throws IOException {
+        long recordBytes = RECORD_HEADER_BYTES + (long) width * height * 4;
+        if (recordBytes > segmentBytes) {
+            throw new IllegalArgumentException("frame " + width + "x" + height + " larger than segment: "
+                    + segmentBytes);
+        }
+        if (segmentBuffer == null || writeOffset + recordBytes > segmentBytes) {
+            rollSegment();
+        }
+        long recordOffset = writeOffset;
+        segmentBuffer.putInt((int) recordOffset, width);
+        segmentBuffer.putInt((int) recordOffset + 4, height);
+        segmentBuffer.putLong((int) recordOffset + 8, timestamp);
+        return recordOffset;
+    }
+
+    /**
+     * 像素写完后再写索引，回放时看到索引就能看到完整的记录
+     */
+    private void endRecord(long recordOffset, int width, int height, long timestamp) throws IOException {
+        indexEntry.clear();
+        indexEntry.putLong(timestamp).putLong(recordOffset).putInt(width).putInt(height);
+        indexEntry.flip();
+        while (indexEntry.hasRemaining()) {
+            indexChannel.write(indexEntry);
+        }
+        writeOffset = recordOffset + RECORD_HEADER_BYTES + (long) width * height * 4;
+        appendedCount++;
+    }
+
+    private void rollSegment() throws IOException {
+        closeSegment();
+        segmentSeq++;
+        File framesFile = new File(dir, segmentName(segmentSeq) + FRAMES_SUFFIX);
+        File indexFile = new File(dir, segmentName(segmentSeq) + INDEX_SUFFIX);
+
+        // 预分配并整体映射，追加时不再扩展文件
+        segmentFile = new RandomAccessFile(framesFile, "rw");
+        segmentFile.setLength(segmentBytes);
+        segmentBuffer = segmentFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+        segmentBuffer.order(ByteOrder.nativeOrder());
+        segmentInts = segmentBuffer.asIntBuffer();
+        indexChannel = new RandomAccessFile(indexFile, "rw").getChannel();
+        indexChannel.truncate(0);
+        writeOffset = 0;
+
+        applyRetention();
+    }
+
+    /**
+     * 按总大小和存活时间，从最旧的段开始删除，当前段不删除
+     */
+    private void applyRetention() {
+        if (maxTotalBytes <= 0 && maxAgeMillis <= 0) {
+            return;
+        }
+        File[] segments = listSegments(dir);
+        long totalBytes = 0;
+        for (File segment : segments) {
+            totalBytes += segment.length() + indexFileOf(segment).length();
+        }
+        long now = System.currentTimeMillis();
+        for (File segment : segments) {
+            if (segmentSeq(segment) == segmentSeq) {
+                break;
+            }
+            boolean tooLarge = maxTotalBytes > 0 && totalBytes > maxTotalBytes;
+            boolean tooOld = maxAgeMillis > 0 && now - indexFileOf(segment).lastModified() > maxAgeMillis;
+            if (!tooLarge && !tooOld) {
+                break;
+            }
+            File indexFile = indexFileOf(segment);
+            long bytes = segment.length() + indexFile.length();
+            if (segment.delete()) {
+                indexFile.delete();
+                totalBytes -= bytes;
+                deletedSegmentCount++;
+                LOGGER.info("journal segment deleted: {}", segment);
+            }
+        }
+    }
+
+    private void closeSegment() throws IOException {
+        if (segmentBuffer != null) {
+            segmentBuffer.force();
+            segmentBuffer = null;
+            segmentInts = null;
+        }
+        if (segmentFile != null) {
+            segmentFile.close();
+            segmentFile = null;
+        }
+        if (indexChannel != null) {
+            indexChannel.close();
+            indexChannel = null;
+        }
+    }
+
+    /**
+     * 写回当前段并关闭。段文件保持预分配的大小，有效的记录以索引为准。
+     */
+    @Override
+    public void close() throws IOException {
+        closeSegment();
+    }
+
+    public File getDir() {
+        return dir;
+    }
+
+    public long getAppendedCount() {
+        return appendedCount;
+    }
+
+    /**
+     * 保留策略删除的段数
+     */
+    public long getDeletedSegmentCount() {
+        return deletedSegmentCount;
+    }
+
+    static String segmentName(int seq) {
+        return String.format("%08d", seq);
+    }
+
+    static int segmentSeq(File framesFile) {
+        String name = framesFile.getName();
+        return Integer.parseInt(name.substring(0, name.length() - FRAMES_SUFFIX.length()));
+    }
+
+    static File indexFileOf(File framesFile) {
+        String name = framesFile.getName();
+        return new File(framesFile.getParentFile(),
+                name.substring(0, name.length() - FRAMES_SUFFIX.length()) + INDEX_SUFFIX);
+    }
+
+    /**
+     * 目录下的段文件，按编号从旧到新排列
+     */
+    static File[] listSegments(File dir) {
+        File[] segments = dir.listFiles(new FileFilter() {
+
+            @Override
+            public boolean accept(File file) {
+                String name = file.getName();
+                return file.isFile() && name.endsWith(FRAMES_SUFFIX)
+                        && name.substring(0, name.length() - FRAMES_SUFFIX.length()).matches("\\d+");
+            }
+        });
+        if (segments == null) {
+            return new File[0];
+        }
+        Arrays.sort(segments);
+        return segments;
+    }
+
+}
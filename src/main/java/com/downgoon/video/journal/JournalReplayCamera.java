@@ -0,0 +1,255 @@
+package com.downgoon.video.journal;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.downgoon.video.camera.CameraException;
+import com.downgoon.video.camera.CameraInterface;
+import com.downgoon.video.camera.VideoFileCapture.Pacing;
+import com.downgoon.video.image.DirectMatrixImage;
+import com.downgoon.video.image.FramePool;
+import com.downgoon.video.image.MatrixImage;
+
+/**
+ * 回放 {@link FrameJournal} 写下的帧，当作摄像头使用。
+ * <p>
+ * 连接时把每个段文件整体只读映射，按索引为每一帧建好一个 {@link DirectMatrixImage} 视图，只读的帧日志也能回放。
+ * {@link #getDirectFrame()} 直接返回映射内存上的帧，不解码、不复制，可以交给 {@code VideoMotionDetector} 的堆外模式检测；
+ * 这些帧是只读的，要在帧上标记，用 {@link #getFrame()} 取一份副本。
+ * 视图只在连接时创建一次，{@link #rewind()} 之后反复回放不再分配内存。
+ * <p>
+ * {@link #getFrame()} 为了满足 {@link CameraInterface}，把帧复制到借自 {@link FramePool} 的 {@link MatrixImage}，多一次内存复制。
+ *
+ * @author downgoon@qq.com
+ * @since 2026-10-17
+ */
+public class JournalReplayCamera implements CameraInterface {
+
+    private final File dir;
+
+    private final Pacing pacing;
+
+    private volatile boolean connected;
+
+    private DirectMatrixImage[] frames;
+
+    private long[] timestamps;
+
+    private int nextFrame;
+
+    private long replayStartNanos;
+
+    private FramePool framePool = new FramePool();
+
+    private int width;
+
+    private int height;
+
+    public JournalReplayCamera(File dir) {
+        this(dir, Pacing.AS_FAST_AS_POSSIBLE);
+    }
+
+    /**
+     * @param dir    帧日志目录
+     * @param pacing 按时间戳实时回放，或尽快回放
+     */
+    public JournalReplayCamera(File dir, Pacing pacing) {
+        this.dir = dir;
+        this.pacing = pacing;
+    }
+
+    /**
+     * 打开帧日志
+     *
+     * @param deviceIndex 不使用，帧日志由构造参数指定
+     */
+    @Override
+    public void connect(int deviceIndex) throws CameraException {
+        connect(deviceIndex, 0, 0);
+    }
+
+    /**
+     * 打开帧日志，画面保持记录时的尺寸
+     *
+     * @param deviceIndex 不使用，帧日志由构造参数指定
+     * @param width       不使用
+     * @param height      不使用
+     */
+    @Override
+    public void connect(int deviceIndex, int width, int height) throws CameraException {
+        List<DirectMatrixImage> frameList = new ArrayList<>();
+        List<Long> timestampList = new ArrayList<>();
+        try {
+            for (File segment : FrameJournal.listSegments(dir)) {
+                mapSegment(segment, frameList, timestampList);
+            }
+        } catch (IOException e) {
+            throw new CameraException("journal open failure: " + dir, e);
+        }
+        if (frameList.isEmpty()) {
+            throw new CameraException("journal is empty: " + dir);
+        }
+
+        frames = frameList.toArray(new DirectMatrixImage[frameList.size()]);
+        timestamps = new long[timestampList.size()];
+        for (int i = 0; i < timestamps.length; i++) {
+            timestamps[i] = timestampList.get(i);
+        }
+        this.width = frames[0].getWidth();
+        this.height = frames[0].getHeight();
+        rewind();
+        connected = true;
+    }
+
+    /**
+     * 映射一个段文件，按索引为每一帧建一个视图。映射在关闭文件之后仍然有效。
+     */
+    private static void mapSegment(File segment, List<DirectMatrixImage> frameList, List<Long> timestampList)
+            throws IOException, CameraException {
+        ByteBuffer index;
+        try (RandomAccessFile indexFile = new RandomAccessFile(FrameJournal.indexFileOf(segment), "r")) {
+            index = ByteBuffer.allocate((int) indexFile.length());
+            FileChannel indexChannel = indexFile.getChannel();
+            while (index.hasRemaining() && indexChannel.read(index) >= 0) {
+                // read the whole index
+            }
+            index.flip();
+        }
+
+        MappedByteBuffer mapped;
+        try (RandomAccessFile framesFile = new RandomAccessFile(segment, "r")) {
+            if (framesFile.length() > Integer.MAX_VALUE) {
+                throw new CameraException("journal segment larger than 2GB: " + segment);
+            }
+            mapped = framesFile.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, framesFile.length());
+        }
+
+        // 最后一条索引可能不完整（追加时中断），忽略
+        while (index.remaining() >= FrameJournal.INDEX_ENTRY_BYTES) {
+            long timestamp = index.getLong();
+            long offset = index.getLong();
+            int frameWidth = index.getInt();
+            int frameHeight = index.getInt();
+            // 索引损坏或者与段文件不符时，不能让视图越出映射的范围
+            long frameBytes = (long) frameWidth * frameHeight * 4;
+            if (offset < 0 || frameWidth <= 0 || frameHeight <= 0
+                    || offset + FrameJournal.RECORD_HEADER_BYTES + frameBytes > mapped.capacity()) {
+                throw new CameraException("journal index entry out of segment " + segment + ": offset " + offset
+                        + ", " + frameWidth + "x" + frameHeight + ", segment " + mapped.capacity() + " bytes");
+            }
+
+            ByteBuffer pixels = mapped.duplicate();
+            pixels.position((int) offset + FrameJournal.RECORD_HEADER_BYTES);
+            pixels.limit(pixels.position() + (int) frameBytes);
+            frameList.add(new DirectMatrixImage(frameWidth, frameHeight, pixels.slice()));
+            timestampList.add(timestamp);
+        }
+    }
+
+    @Override
+    public boolean isConnected() {
+        return this.connected;
+    }
+
+    /**
+     * 断开后映射的内存由 GC 回收，之前取到的帧不要再使用
+     */
+    @Override
+    public void disconnect() throws CameraException {
+        connected = false;
+        frames = null;
+        timestamps = null;
+    }
+
+    /**
+     * 从第一帧重新回放，回放完之后也可以。断开之后无效。
+     */
+    public void rewind() {
+        nextFrame = 0;
+        replayStartNanos = System.nanoTime();
+        if (frames != null) {
+            connected = true;
+        }
+    }
+
+    /**
+     * 取下一帧，直接是映射内存上的视图，不复制，也不需要归还。回放完后 {@link #isConnected()} 变为 false。
+     *
+     * @throws CameraException 已经回放完
+     */
+    public DirectMatrixImage getDirectFrame() throws CameraException {
+        if (!connected) {
+            throw new IllegalStateException("journal not opened or replay finished");
+        }
+        if (nextFrame >= frames.length) {
+            connected = false;
+            throw new CameraException("end of journal: " + dir);
+        }
+
+        if (pacing == Pacing.REALTIME) {
+            // 等到这一帧的时间点再放出去
+            long dueNanos = replayStartNanos + TimeUnit.MILLISECONDS.toNanos(timestamps[nextFrame] - timestamps[0]);
+            long waitNanos = dueNanos - System.nanoTime();
+            if (waitNanos > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(waitNanos);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new CameraException("journal replay interrupted", e);
+                }
+            }
+        }
+        return frames[nextFrame++];
+    }
+
+    /**
+     * 取下一帧，复制到借自帧缓冲池的帧。用完后调用 {@link MatrixImage#release()} 归还。
+     */
+    @Override
+    public MatrixImage getFrame() throws CameraException {
+        DirectMatrixImage directFrame = getDirectFrame();
+        MatrixImage frame = framePool.acquire(directFrame.getWidth(), directFrame.getHeight());
+        directFrame.copyTo(frame);
+        return frame;
+    }
+
+    public void setFramePool(FramePool framePool) {
+        this.framePool = framePool;
+    }
+
+    public int getFrameCount() {
+        return frames == null ? 0 : frames.length;
+    }
+
+    /**
+     * 下一帧的序号
+     */
+    public int getFrameIndex() {
+        return nextFrame;
+    }
+
+    /**
+     * 刚取出的一帧的时间戳，毫秒
+     */
+    public long getTimestamp() {
+        return nextFrame > 0 ? timestamps[nextFrame - 1] : 0L;
+    }
+
+    @Override
+    public int getWidth() {
+        return this.width;
+    }
+
+    @Override
+    public int getHeight() {
+        return this.height;
+    }
+
+}
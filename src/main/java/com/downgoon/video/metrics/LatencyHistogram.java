@@ -0,0 +1,125 @@
+package com.downgoon.video.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 无锁的耗时直方图（纳秒），思路同 HdrHistogram：按2的幂分段，每段再等分16个桶，相对误差不超过 1/16。
+ * <p>
+ * 记录一个样本只需算出桶号，再做两次原子加（桶计数、总和），最大值只在刷新时才CAS，
+ * 不加锁、不分配内存，可以常开在生产环境。读取时对桶计数做一次快照，计算均值和分位数。
+ *
+ * @author downgoon@qq.com
+ * @since 2026-10-17
+ */
+public class LatencyHistogram {
+
+    /**
+     * 每个2的幂分段内的桶数：2^4 = 16
+     */
+    private static final int SUB_BUCKET_BITS = 4;
+
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /**
+     * 覆盖 [0, 2^63) 纳秒
+     */
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    private final AtomicLong totalNanos = new AtomicLong();
+
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    /**
+     * 记录一个样本
+     *
+     * @param nanos 耗时（纳秒），负数按0计
+     */
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        counts.incrementAndGet(bucketIndex(nanos));
+        totalNanos.addAndGet(nanos);
+
+        long max = maxNanos.get();
+        while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+            max = maxNanos.get();
+        }
+    }
+
+    static int bucketIndex(long nanos) {
+        if (nanos < SUB_BUCKETS) {
+            return (int) nanos;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        int subBucket = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * 桶的下界（含）
+     */
+    static long bucketLowerBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long subBucket = index % SUB_BUCKETS;
+        return (SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS);
+    }
+
+    /**
+     * 当前的统计快照
+     */
+    public LatencySnapshot snapshot() {
+        long[] snapshot = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            count += snapshot[i];
+        }
+        if (count == 0) {
+            return new LatencySnapshot(0, 0, 0, 0, 0, 0);
+        }
+        double mean = totalNanos.get() / (double) count;
+        return new LatencySnapshot(count, toMicros(mean), toMicros(percentile(snapshot, count, 0.50)),
+                toMicros(percentile(snapshot, count, 0.90)), toMicros(percentile(snapshot, count, 0.99)),
+                toMicros(maxNanos.get()));
+    }
+
+    /**
+     * 分位数取所在桶的中点
+     */
+    private static double percentile(long[] snapshot, long count, double quantile) {
+        long rank = (long) Math.ceil(quantile * count);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank && snapshot[i] > 0) {
+                long lower = bucketLowerBound(i);
+                long upper = i + 1 < BUCKETS ? bucketLowerBound(i + 1) : Long.MAX_VALUE;
+                return lower + (upper - lower - 1) / 2.0;
+            }
+        }
+        return 0;
+    }
+
+    private static double toMicros(double nanos) {
+        return nanos / 1000.0;
+    }
+
+    /**
+     * 清零。与记录并发时，正在记录的样本可能部分计入。
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        totalNanos.set(0);
+        maxNanos.set(0);
+    }
+
+}
@@ -0,0 +1,249 @@
+package com.downgoon.video.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 运动检测各环节的指标：抓图、格式转换、像素统计、区块合并、显示的耗时直方图，
+ * 以及帧数、丢帧、抓图失败、运动区域个数等计数器。
+ * <p>
+ * 各组件通过 {@code setMetrics} 接入，没有设置时不计时、不记录。指标可以注册为JMX MXBean，也可以定期打一行日志：
+ *
+ * <pre>
+ * MotionMetrics metrics = new MotionMetrics("camera-0");
+ * cameraCapture.setMetrics(metrics);
+ * motionDetector.setMetrics(metrics);
+ * metrics.registerMBean();
+ * metrics.startLogging(10, TimeUnit.SECONDS);
+ * </pre>
+ *
+ * @author downgoon@qq.com
+ * @since 2026-10-17
+ */
+public class MotionMetrics implements MotionMetricsMXBean {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MotionMetrics.class);
+
+    private final String name;
+
+    private final LatencyHistogram grab = new LatencyHistogram();
+
+    private final LatencyHistogram convert = new LatencyHistogram();
+
+    private final LatencyHistogram pixelPass = new LatencyHistogram();
+
+    private final LatencyHistogram merge = new LatencyHistogram();
+
+    private final LatencyHistogram render = new LatencyHistogram();
+
+    private final AtomicLong frames = new AtomicLong();
+
+    private final AtomicLong drops = new AtomicLong();
+
+    private final AtomicLong captureFailures = new AtomicLong();
+
+    private final AtomicLong regions = new AtomicLong();
+
+    private volatile long startNanos = System.nanoTime();
+
+    private ObjectName objectName;
+
+    private ScheduledExecutorService logScheduler;
+
+    /**
+     * 上一次日志时的帧数和时间，用于计算区间帧率
+     */
+    private long lastLogFrames;
+
+    private long lastLogNanos = System.nanoTime();
+
+    public MotionMetrics(String name) {
+        this.name = name;
+    }
+
+    public void recordGrab(long nanos) {
+        grab.record(nanos);
+    }
+
+    public void recordConvert(long nanos) {
+        convert.record(nanos);
+    }
+
+    /**
+     * 记录一帧检测：像素统计和区块合并的耗时，以及找到的运动区域个数
+     */
+    public void recordDetect(long pixelPassNanos, long mergeNanos, int regionCount) {
+        pixelPass.record(pixelPassNanos);
+        merge.record(mergeNanos);
+        frames.incrementAndGet();
+        regions.addAndGet(regionCount);
+    }
+
+    public void recordRender(long nanos) {
+        render.record(nanos);
+    }
+
+    public void frameDropped() {
+        drops.incrementAndGet();
+    }
+
+    public void captureFailed() {
+        captureFailures.incrementAndGet();
+    }
+
+    @Override
+    public LatencySnapshot getGrab() {
+        return grab.snapshot();
+    }
+
+    @Override
+    public LatencySnapshot getConvert() {
+        return convert.snapshot();
+    }
+
+    @Override
+    public LatencySnapshot getPixelPass() {
+        return pixelPass.snapshot();
+    }
+
+    @Override
+    public LatencySnapshot getMerge() {
+        return merge.snapshot();
+    }
+
+    @Override
+    public LatencySnapshot getRender() {
+        return render.snapshot();
+    }
+
+    @Override
+    public long getFrames() {
+        return frames.get();
+    }
+
+    @Override
+    public long getDrops() {
+        return drops.get();
+    }
+
+    @Override
+    public long getCaptureFailures() {
+        return captureFailures.get();
+    }
+
+    @Override
+    public long getRegions() {
+        return regions.get();
+    }
+
+    @Override
+    public double getFps() {
+        return frames.get() * 1e9 / Math.max(1, System.nanoTime() - startNanos);
+    }
+
+    @Override
+    public void reset() {
+        grab.reset();
+        convert.reset();
+        pixelPass.reset();
+        merge.reset();
+        render.reset();
+        frames.set(0);
+        drops.set(0);
+        captureFailures.set(0);
+        regions.set(0);
+        startNanos = System.nanoTime();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 注册到平台 MBeanServer：{@code com.downgoon.video:type=MotionMetrics,name=<name>}
+     */
+    public synchronized void registerMBean() {
+        if (objectName != null) {
+            return;
+        }
+        try {
+            ObjectName on = new ObjectName("com.downgoon.video:type=MotionMetrics,name=" + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, on);
+            objectName = on;
+        } catch (JMException e) {
+            throw new IllegalStateException("motion metrics mbean register failure: " + name, e);
+        }
+    }
+
+    public synchronized void unregisterMBean() {
+        if (objectName == null) {
+            return;
+        }
+        MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+        try {
+            mbeanServer.unregisterMBean(objectName);
+        } catch (JMException e) {
+            LOGGER.warn("motion metrics mbean unregister failure: {}", e.getMessage());
+        }
+        objectName = null;
+    }
+
+    /**
+     * 在一个后台线程上定期打印 {@link #logLine()}
+     */
+    public synchronized void startLogging(long period, TimeUnit unit) {
+        if (logScheduler != null) {
+            return;
+        }
+        logScheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "motion-metrics-" + name);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        logScheduler.scheduleAtFixedRate(new Runnable() {
+
+            @Override
+            public void run() {
+                LOGGER.info(logLine());
+            }
+        }, period, period, unit);
+    }
+
+    public synchronized void stopLogging() {
+        if (logScheduler != null) {
+            logScheduler.shutdownNow();
+            logScheduler = null;
+        }
+    }
+
+    /**
+     * 一行指标：区间帧率、累计计数，以及各环节耗时的 p50/p99/max
+     */
+    public synchronized String logLine() {
+        long now = System.nanoTime();
+        long frameCount = frames.get();
+        double fps = (frameCount - lastLogFrames) * 1e9 / Math.max(1, now - lastLogNanos);
+        lastLogFrames = frameCount;
+        lastLogNanos = now;
+        return String.format("%s: %.1f fps, frames=%d drops=%d failures=%d regions=%d | grab %s | convert %s"
+                + " | pixel %s | merge %s | render %s", name, fps, frameCount, drops.get(), captureFailures.get(),
+                regions.get(), grab.snapshot(), convert.snapshot(), pixelPass.snapshot(), merge.snapshot(),
+                render.snapshot());
+    }
+
+}
@@ -0,0 +1,36 @@
+package com.downgoon.video.metrics;
+
+/**
+ * 运动检测指标的JMX接口，在 jconsole / VisualVM 的 {@code com.downgoon.video:type=MotionMetrics} 下查看
+ *
+ * @author downgoon@qq.com
+ * @since 2026-10-17
+ */
+public interface MotionMetricsMXBean {
+
+    LatencySnapshot getGrab();
+
+    LatencySnapshot getConvert();
+
+    LatencySnapshot getPixelPass();
+
+    LatencySnapshot getMerge();
+
+    LatencySnapshot getRender();
+
+    long getFrames();
+
+    long getDrops();
+
+    long getCaptureFailures();
+
+    long getRegions();
+
+    /**
+     * 自启动以来的平均帧率
+     */
+    double getFps();
+
+    void reset();
+
+}
@@ -0,0 +1,14 @@
+package com.downgoon.video.pipeline;
+
+/**
+ * 输入缓冲区满、按 {@link OverflowPolicy#DROP_OLDEST} 丢弃一帧时的通知，在上游阶段的线程上调用。
+ * 被丢弃的帧随后交给 {@link Recycler} 回收；处理失败、流水线停止时剩余的输入不算溢出，不通知。
+ *
+ * @author downgoon@qq.com
+ * @since 2026-10-17
+ */
+public interface OverflowListener {
+
+    void onOverflow(PipelineStage<?, ?> stage);
+
+}
@@ -0,0 +1,21 @@
+package com.downgoon.video.pipeline;
+
+/**
+ * 环形缓冲区满时，上游阶段的处理策略
+ *
+ * @author downgoon@qq.com
+ * @since 2026-10-17
+ */
+public enum OverflowPolicy {
+
+    /**
+     * 丢弃最旧的一帧，腾出位置给新的一帧：延迟有上限，适合实时显示
+     */
+    DROP_OLDEST,
+
+    /**
+     * 阻塞上游，直到下游取走一帧：不丢帧，适合处理录像
+     */
+    BLOCK
+
+}
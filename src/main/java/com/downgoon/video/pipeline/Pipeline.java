@@ -0,0 +1,124 @@
+package com.downgoon.video.pipeline;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 多阶段流水线：抓图、检测、标记、显示等阶段各占一个线程，阶段之间用有界的单生产者单消费者环形缓冲区连接。
+ * 某个阶段偶尔变慢时，只会占满它前面的缓冲区，按策略丢帧或阻塞，不会拖慢其它阶段。
+ *
+ * <pre>
+ * Pipeline pipeline = new Pipeline("video-motion-detection");
+ * pipeline.source("capture", captureHandler)
+ *         .then("detect", detectHandler, 2, OverflowPolicy.DROP_OLDEST)
+ *         .then("render", renderHandler, 2, OverflowPolicy.DROP_OLDEST);
+ * pipeline.start();
+ * </pre>
+ *
+ * @author downgoon@qq.com
+ * @since 2026-10-17
+ */
+public class Pipeline {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(Pipeline.class);
+
+    private final String name;
+
+    private final List<PipelineStage<?, ?>> stages = new ArrayList<>();
+
+    private final List<Thread> threads = new ArrayList<>();
+
+    private volatile boolean running;
+
+    public Pipeline(String name) {
+        this.name = name;
+    }
+
+    /**
+     * 设置源头阶段，它没有输入缓冲区，循环调用 handler 产生输出（输入参数恒为 null）
+     */
+    public <O> PipelineStage<Void, O> source(String stageName, StageHandler<Void, O> handler) {
+        if (!stages.isEmpty()) {
+            throw new IllegalStateException("pipeline " + name + " already has a source stage");
+        }
+        PipelineStage<Void, O> stage = new PipelineStage<>(this, stageName, handler, 0, OverflowPolicy.BLOCK);
+        addStage(stage);
+        return stage;
+    }
+
+    void addStage(PipelineStage<?, ?> stage) {
+        if (running) {
+            throw new IllegalStateException("pipeline " + name + " already started");
+        }
+        stages.add(stage);
+    }
+
+    /**
+     * 为每个阶段启动一个线程
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        if (stages.isEmpty()) {
+            throw new IllegalStateException("pipeline " + name + " has no stage");
+        }
+        running = true;
+        for (PipelineStage<?, ?> stage : stages) {
+            Thread thread = new Thread(stage, name + "-" + stage.getName());
+            threads.add(thread);
+            thread.start();
+        }
+        LOGGER.info("pipeline {} started with {} stages", name, stages.size());
+    }
+
+    /**
+     * 停止所有阶段，并等待它们的线程退出。阶段自己的线程也可以调用，此时不等待自己。
+     * 缓冲区中尚未处理的帧被回收，包括下游线程退出之后上游才放进来的帧。
+     */
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        for (PipelineStage<?, ?> stage : stages) {
+            stage.wakeUp();
+        }
+        for (Thread thread : threads) {
+            if (thread == Thread.currentThread()) {
+                continue;
+            }
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        threads.clear();
+        for (PipelineStage<?, ?> stage : stages) {
+            stage.drainInput();
+        }
+        LOGGER.info("pipeline {} stopped: {}", name, stages);
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 各阶段，按上下游顺序；可用于查看各缓冲区的占用和丢帧情况
+     */
+    public List<PipelineStage<?, ?>> getStages() {
+        return Collections.unmodifiableList(stages);
+    }
+
+}
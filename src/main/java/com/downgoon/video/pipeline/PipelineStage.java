@@ -0,0 +1,233 @@
+package com.downgoon.video.pipeline;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 流水线中的一个阶段：独占一个线程，从输入环形缓冲区取出上游的输出，处理后放进下游的输入环形缓冲区。
+ * <p>
+ * 每个环形缓冲区只有一个生产者（上游阶段的线程）和一个消费者（本阶段的线程）。
+ * 取不到输入时线程短暂挂起，上游放入输入后立即唤醒它。
+ *
+ * @param <I> 输入类型
+ * @param <O> 输出类型
+ * @author downgoon@qq.com
+ * @since 2026-10-17
+ */
+public class PipelineStage<I, O> implements Runnable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PipelineStage.class);
+
+    /**
+     * 没有输入，或下游已满且策略为阻塞时，每次挂起的时长
+     */
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final Pipeline pipeline;
+
+    private final String name;
+
+    private final StageHandler<I, O> handler;
+
+    /**
+     * 输入缓冲区，源头阶段为 null
+     */
+    private final RingBuffer<I> input;
+
+    private final OverflowPolicy policy;
+
+    private PipelineStage<O, ?> next;
+
+    private Recycler<? super I> recycler;
+
+    private OverflowListener overflowListener;
+
+    private volatile Thread thread;
+
+    private final AtomicLong processedCount = new AtomicLong();
+
+    private final AtomicLong droppedCount = new AtomicLong();
+
+    private final AtomicLong failedCount = new AtomicLong();
+
+    PipelineStage(Pipeline pipeline, String name, StageHandler<I, O> handler, int capacity, OverflowPolicy policy) {
+        this.pipeline = pipeline;
+        this.name = name;
+        this.handler = handler;
+        this.input = capacity > 0 ? new RingBuffer<I>(capacity) : null;
+        this.policy = policy;
+    }
+
+    /**
+     * 追加一个下游阶段
+     *
+     * @param name     阶段名，也用作线程名的后缀
+     * @param handler  处理逻辑
+     * @param capacity 下游输入缓冲区的容量（帧数）
+     * @param policy   下游输入缓冲区满时的策略
+     * @return 下游阶段
+     */
+    public <N> PipelineStage<O, N> then(String name, StageHandler<O, N> handler, int capacity,
+            OverflowPolicy policy) {
+        if (next != null) {
+            throw new IllegalStateException("stage " + this.name + " already has a downstream stage");
+        }
+        PipelineStage<O, N> stage = new PipelineStage<>(pipeline, name, handler, capacity, policy);
+        next = stage;
+        pipeline.addStage(stage);
+        return stage;
+    }
+
+    /**
+     * 设置本阶段输入的回收器
+     *
+     * @return 本阶段，便于链式调用
+     */
+    public PipelineStage<I, O> recycle(Recycler<? super I> recycler) {
+        this.recycler = recycler;
+        return this;
+    }
+
+    /**
+     * 设置本阶段输入缓冲区溢出的监听器
+     *
+     * @return 本阶段，便于链式调用
+     */
+    public PipelineStage<I, O> onOverflow(OverflowListener overflowListener) {
+        this.overflowListener = overflowListener;
+        return this;
+    }
+
+    @Override
+    public void run() {
+        thread = Thread.currentThread();
+        while (pipeline.isRunning()) {
+            I in = null;
+            if (input != null) {
+                in = input.poll();
+                if (in == null) {
+                    LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                    continue;
+                }
+            }
+
+            O out;
+            try {
+                out = handler.handle(in);
+                processedCount.incrementAndGet();
+            } catch (Exception e) {
+                // don't break from the loop
+                failedCount.incrementAndGet();
+                LOGGER.error("stage {} exception: {}", name, e.getMessage(), e);
+                recycle(in);
+                continue;
+            }
+
+            if (out != null && next != null) {
+                next.enqueue(out);
+            }
+        }
+
+        // 流水线停止，回收尚未处理的输入
+        drainInput();
+    }
+
+    /**
+     * 回收输入缓冲区中尚未处理的元素
+     */
+    void drainInput() {
+        if (input != null) {
+            I left;
+            while ((left = input.poll()) != null) {
+                recycle(left);
+            }
+        }
+    }
+
+    /**
+     * 由上游阶段的线程调用，把一个输入放进本阶段的缓冲区。流水线已经停止时直接回收。
+     */
+    private void enqueue(I element) {
+        if (!pipeline.isRunning()) {
+            recycle(element);
+            return;
+        }
+        if (policy == OverflowPolicy.DROP_OLDEST) {
+            I dropped = input.offerDropOldest(element);
+            if (dropped != null) {
+                droppedCount.incrementAndGet();
+                if (overflowListener != null) {
+                    overflowListener.onOverflow(this);
+                }
+                recycle(dropped);
+            }
+        } else {
+            while (!input.offer(element)) {
+                if (!pipeline.isRunning()) {
+                    recycle(element);
+                    return;
+                }
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+            }
+        }
+        wakeUp();
+    }
+
+    private void recycle(I element) {
+        if (element != null && recycler != null) {
+            recycler.recycle(element);
+        }
+    }
+
+    void wakeUp() {
+        Thread t = thread;
+        if (t != null) {
+            LockSupport.unpark(t);
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public OverflowPolicy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * 输入缓冲区中等待处理的帧数，源头阶段恒为0
+     */
+    public int getQueueSize() {
+        return input == null ? 0 : input.size();
+    }
+
+    public int getQueueCapacity() {
+        return input == null ? 0 : input.capacity();
+    }
+
+    public long getProcessedCount() {
+        return processedCount.get();
+    }
+
+    /**
+     * 输入缓冲区满时丢弃的帧数
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    @Override
+    public String toString() {
+        return name + "[queue=" + getQueueSize() + "/" + getQueueCapacity() + ", processed=" + getProcessedCount()
+                + ", dropped=" + getDroppedCount() + ", failed=" + getFailedCount() + "]";
+    }
+
+}
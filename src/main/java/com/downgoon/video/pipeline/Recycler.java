@@ -0,0 +1,16 @@
+package com.downgoon.video.pipeline;
+
+/**
+ * 回收没有被处理的输入：缓冲区满时被丢弃的、处理失败的、流水线停止时剩余的。
+ * 只需统计溢出丢弃的帧时，用 {@link OverflowListener}。
+ * 输入借自缓冲池时，用它归还，例如 {@link com.downgoon.video.image.MatrixImage#release()}。
+ *
+ * @param <T> 输入类型
+ * @author downgoon@qq.com
+ * @since 2026-10-17
+ */
+public interface Recycler<T> {
+
+    void recycle(T element);
+
+}
@@ -0,0 +1,111 @@
+package com.downgoon.video.pipeline;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 单生产者、单消费者的有界环形缓冲区。槽位在构造时一次分配，之后入队出队都不分配内存。
+ * <p>
+ * 生产者只推进队尾；消费者推进队头。为了支持"丢弃最旧"，生产者在队列满时也可以推进队头，
+ * 因此队头用 CAS 推进：消费者先读出槽位中的元素，再 CAS 推进队头，CAS 失败说明该元素已被生产者丢弃，重新读取即可。
+ *
+ * @author downgoon@qq.com
+ * @since 2026-10-17
+ */
+public final class RingBuffer<T> {
+
+    private final AtomicReferenceArray<T> slots;
+
+    private final int mask;
+
+    /**
+     * 下一个出队的位置
+     */
+    private final AtomicLong head = new AtomicLong();
+
+    /**
+     * 下一个入队的位置
+     */
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * @param capacity 容量，向上取整为2的幂
+     */
+    public RingBuffer(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    /**
+     * 生产者入队
+     *
+     * @return 队列已满时返回 false
+     */
+    public boolean offer(T element) {
+        long t = tail.get();
+        if (t - head.get() > mask) {
+            return false;
+        }
+        slots.lazySet((int) t & mask, element);
+        tail.lazySet(t + 1);
+        return true;
+    }
+
+    /**
+     * 生产者入队，队列已满时先丢弃最旧的元素
+     *
+     * @return 被丢弃的元素，没有丢弃时返回 null
+     */
+    public T offerDropOldest(T element) {
+        T dropped = null;
+        while (!offer(element)) {
+            long h = head.get();
+            T oldest = slots.get((int) h & mask);
+            if (head.compareAndSet(h, h + 1)) {
+                slots.compareAndSet((int) h & mask, oldest, null);
+                dropped = oldest;
+            }
+        }
+        return dropped;
+    }
+
+    /**
+     * 消费者出队
+     *
+     * @return 队列为空时返回 null
+     */
+    public T poll() {
+        while (true) {
+            long h = head.get();
+            if (h >= tail.get()) {
+                return null;
+            }
+            T element = slots.get((int) h & mask);
+            if (head.compareAndSet(h, h + 1)) {
+                // 清空槽位，不再引用已出队的元素；生产者已经写入新元素时 CAS 失败，不会误清
+                slots.compareAndSet((int) h & mask, element, null);
+                return element;
+            }
+        }
+    }
+
+    /**
+     * 当前元素个数
+     */
+    public int size() {
+        long size = tail.get() - head.get();
+        return (int) Math.max(0, Math.min(size, capacity()));
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+
+}
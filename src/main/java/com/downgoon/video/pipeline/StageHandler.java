@@ -0,0 +1,22 @@
+package com.downgoon.video.pipeline;
+
+/**
+ * 流水线中一个阶段的处理逻辑，运行在该阶段独占的线程上
+ *
+ * @param <I> 输入类型，源头阶段的输入恒为 null
+ * @param <O> 输出类型
+ * @author downgoon@qq.com
+ * @since 2026-10-17
+ */
+public interface StageHandler<I, O> {
+
+    /**
+     * 处理一个输入
+     *
+     * @param input 上游的输出；源头阶段为 null
+     * @return 交给下游的输出，返回 null 表示本次没有输出
+     * @throws Exception 处理失败时抛出，阶段记录日志后继续处理下一个输入
+     */
+    O handle(I input) throws Exception;
+
+}
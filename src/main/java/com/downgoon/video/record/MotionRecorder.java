@@ -0,0 +1,411 @@
+package com.downgoon.video.record;
+
+import java.io.File;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.bytedeco.ffmpeg.global.avcodec;
+import org.bytedeco.javacv.FFmpegFrameRecorder;
+import org.bytedeco.javacv.Frame;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.downgoon.video.image.ImageConvertor;
+import com.downgoon.video.image.MatrixImage;
+import com.downgoon.video.pipeline.RingBuffer;
+
+/**
+ * 运动触发的录像：平时只在内存里保留最近几秒的画面（预录），检测到运动时才打开 {@link FFmpegFrameRecorder}，
+ * 先写入预录的画面，再写入后续的实时画面；连续一段时间没有运动后关闭文件。没有运动时不写磁盘。
+ * <p>
+ * 检测线程只调用 {@link #offer(MatrixImage, boolean)}：给帧加一次引用，放进一个有界的环形缓冲区，立即返回。
+ * 一个单独的录像线程取出帧，转换成 BGR 写入预录环中的一个槽位后立即归还原帧，需要时再编码写盘，
+ * 编码再慢也不会拖慢检测；录像线程跟不上时丢弃最旧的帧。
+ * <p>
+ * 预录环的槽位是本地内存中的 {@link Frame}，第一帧到来时按画面尺寸一次分配，之后循环复用，
+ * 占用内存为 {@code (预录帧数 + 1) * 宽 * 高 * 3} 字节，不占用帧缓冲池，也不给 GC 增加负担。
+ *
+ * @author downgoon@qq.com
+ * @since 2026-10-17
+ */
+public class MotionRecorder {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MotionRecorder.class);
+
+    /**
+     * 检测线程到录像线程之间的缓冲帧数
+     */
+    private static final int QUEUE_CAPACITY = 16;
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    /**
+     * 打开录像文件失败后，重试的最短、最长间隔：每失败一次间隔加倍
+     */
+    private static final long MIN_RETRY_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private static final long MAX_RETRY_NANOS = TimeUnit.SECONDS.toNanos(30);
+
+    private final File outputDir;
+
+    private final String name;
+
+    private final double frameRate;
+
+    private final int preRollFrames;
+
+    private final long quietNanos;
+
+    private final RingBuffer<QueuedFrame> queue = new RingBuffer<>(QUEUE_CAPACITY);
+
+    private volatile boolean running;
+
+    /**
+     * 送入帧与停止互斥：停止之后不会再有帧入队，停止时清空队列就不会漏掉借来的帧
+     */
+    private final Object offerLock = new Object();
+
+    private volatile Thread thread;
+
+    /**
+     * 预录环：以下字段只在录像线程上访问
+     */
+    private Frame[] slots;
+
+    private long[] slotNanos;
+
+    /**
+     * 下一个写入的槽位
+     */
+    private int nextSlot;
+
+    /**
+     * 预录环中尚未写盘的帧数
+     */
+    private int pendingSlots;
+
+    private FFmpegFrameRecorder recorder;
+
+    private long segmentStartNanos;
+
+    private long lastMotionNanos;
+
+    /**
+     * 上次打开录像文件失败了，在 retryNotBeforeNanos 之前不再重试；以及下次失败后的重试间隔
+     */
+    private boolean openFailed;
+
+    private long retryNotBeforeNanos;
+
+    private long retryIntervalNanos = MIN_RETRY_NANOS;
+
+    private final SimpleDateFormat fileTimeFormat = new SimpleDateFormat("yyyyMMdd-HHmmss-SSS");
+
+    private volatile File currentFile;
+
+    private final AtomicLong segmentCount = new AtomicLong();
+
+    private final AtomicLong recordedCount = new AtomicLong();
+
+    private final AtomicLong droppedCount = new AtomicLong();
+
+    private final AtomicLong failedCount = new AtomicLong();
+
+    /**
+     * @param outputDir      录像文件目录
+     * @param name           录像文件名前缀，通常为摄像头名称
+     * @param frameRate      帧率
+     * @param preRollSeconds 预录秒数：运动开始之前保留多长时间的画面
+     * @param quietMillis    静默时长：连续多长时间没有运动后关闭录像文件
+     */
+    public MotionRecorder(File outputDir, String name, double frameRate, double preRollSeconds, long quietMillis) {
+        if (frameRate <= 0) {
+            throw new IllegalArgumentException("frame rate must be positive: " + frameRate);
+        }
+        if (preRollSeconds < 0 || quietMillis < 0) {
+            throw new IllegalArgumentException("pre-roll and quiet period must not be negative");
+        }
+        this.outputDir = outputDir;
+        this.name = name;
+        this.frameRate = frameRate;
+        this.preRollFrames = (int) Math.round(preRollSeconds * frameRate);
+        this.quietNanos = TimeUnit.MILLISECONDS.toNanos(quietMillis);
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        if (!outputDir.isDirectory() && !outputDir.mkdirs()) {
+            throw new IllegalStateException("cannot create record directory: " + outputDir);
+        }
+        running = true;
+        Thread t = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                recordContinuously();
+            }
+        }, "motion-recorder-" + name);
+        t.setDaemon(true);
+        thread = t;
+        t.start();
+    }
+
+    /**
+     * 停止录像线程：正在录制的文件写完已经入队的帧后关闭，来不及处理的帧归还
+     */
+    public synchronized void stop() {
+        synchronized (offerLock) {
+            running = false;
+        }
+        Thread t = thread;
+        if (t == null) {
+            return;
+        }
+        LockSupport.unpark(t);
+        try {
+            t.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        thread = null;
+        QueuedFrame left;
+        while ((left = queue.poll()) != null) {
+            left.frame.release();
+        }
+    }
+
+    /**
+     * 送入一帧，在检测线程上调用，不等待编码。帧会被加一次引用，录像线程转换后归还，调用方照常释放自己的引用。
+     * 录像线程跟不上时丢弃最旧的帧。不是借自帧缓冲池的帧没有引用计数，录像线程转换完之前调用方不要修改它。
+     *
+     * @param frame  当前帧
+     * @param motion 这一帧是否检测到运动
+     */
+    public void offer(MatrixImage frame, boolean motion) {
+        QueuedFrame dropped;
+        synchronized (offerLock) {
+            if (!running) {
+                return;
+            }
+            dropped = queue.offerDropOldest(new QueuedFrame(frame.retain(), motion, System.nanoTime()));
+        }
+        if (dropped != null) {
+            dropped.frame.release();
+            droppedCount.incrementAndGet();
+        }
+        Thread t = thread;
+        if (t != null) {
+            LockSupport.unpark(t);
+        }
+    }
+
+    private void recordContinuously() {
+        try {
+            while (true) {
+                QueuedFrame queued = queue.poll();
+                if (queued == null) {
+                    if (!running) {
+                        break;
+                    }
+                    LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                    continue;
+                }
+                try {
+                    accept(queued.frame, queued.motion, queued.nanos);
+                } catch (Exception e) {
+                    failedCount.incrementAndGet();
+                    LOGGER.error("motion record {} exception: {}", name, e.getMessage(), e);
+                    closeRecorder();
+                }
+            }
+        } finally {
+            closeRecorder();
+        }
+    }
+
+    /**
+     * 录像线程处理一帧：写入预录环，归还原帧；有运动时打开录像并写出预录环中尚未写盘的帧
+     */
+    private void accept(MatrixImage frame, boolean motion, long nanos) throws Exception {
+        try {
+            prepareSlots(frame.getWidth(), frame.getHeight());
+            ImageConvertor.toFrame(frame, slots[nextSlot]);
+        } finally {
+            frame.release();
+        }
+        slotNanos[nextSlot] = nanos;
+        nextSlot = (nextSlot + 1) % slots.length;
+        pendingSlots = Math.min(pendingSlots + 1, slots.length);
+
+        if (motion) {
+            lastMotionNanos = nanos;
+            if (recorder == null && (!openFailed || nanos - retryNotBeforeNanos >= 0)) {
+                openRecorder(frame.getWidth(), frame.getHeight(), nanos);
+            }
+        }
+        if (recorder == null) {
+            return;
+        }
+
+        writePendingSlots();
+        if (!motion && nanos - lastMotionNanos > quietNanos) {
+            closeRecorder();
+        }
+    }
+
+    /**
+     * 按画面尺寸分配预录环；尺寸变化时先结束当前录像
+     */
+    private void prepareSlots(int width, int height) {
+        if (slots != null && slots[0].imageWidth == width && slots[0].imageHeight == height) {
+            return;
+        }
+        closeRecorder();
+        slots = new Frame[preRollFrames + 1];
+        slotNanos = new long[slots.length];
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = new Frame(width, height, Frame.DEPTH_UBYTE, 3);
+        }
+        nextSlot = 0;
+        pendingSlots = 0;
+    }
+
+    /**
+     * 按时间顺序写出预录环中尚未写盘的帧，时间戳取帧送入的时刻，预录部分与实时部分的节奏保持一致
+     */
+    private void writePendingSlots() throws Exception {
+        int slot = (nextSlot - pendingSlots + slots.length) % slots.length;
+        while (pendingSlots > 0) {
+            long timestamp = TimeUnit.NANOSECONDS.toMicros(slotNanos[slot] - segmentStartNanos);
+            if (timestamp > recorder.getTimestamp()) {
+                recorder.setTimestamp(timestamp);
+            }
+            recorder.record(slots[slot]);
+            recordedCount.incrementAndGet();
+            slot = (slot + 1) % slots.length;
+            pendingSlots--;
+        }
+    }
+
+    /**
+     * 打开录像文件。失败时释放这个录像器，并推迟下次重试，而不是每个运动帧都重新打开一次。
+     */
+    private void openRecorder(int width, int height, long nanos) throws Exception {
+        File file = new File(outputDir, name + "-" + fileTimeFormat.format(new Date()) + ".mp4");
+        FFmpegFrameRecorder r = new FFmpegFrameRecorder(file, width, height);
+        r.setFormat("mp4");
+        r.setVideoCodec(avcodec.AV_CODEC_ID_H264);
+        r.setFrameRate(frameRate);
+        try {
+            r.start();
+        } catch (Exception e) {
+            try {
+                r.release();
+            } catch (Exception re) {
+                LOGGER.warn("motion record {} release exception: {}", name, re.getMessage());
+            }
+            file.delete();
+            openFailed = true;
+            retryNotBeforeNanos = nanos + retryIntervalNanos;
+            LOGGER.warn("motion record {} cannot open {}, retry in {} ms", name, file,
+                    TimeUnit.NANOSECONDS.toMillis(retryIntervalNanos));
+            retryIntervalNanos = Math.min(retryIntervalNanos * 2, MAX_RETRY_NANOS);
+            throw e;
+        }
+        openFailed = false;
+        retryIntervalNanos = MIN_RETRY_NANOS;
+
+        // 第一帧是预录环中最旧的尚未写盘的帧
+        int oldest = (nextSlot - pendingSlots + slots.length) % slots.length;
+        segmentStartNanos = slotNanos[oldest];
+        recorder = r;
+        currentFile = file;
+        segmentCount.incrementAndGet();
+        LOGGER.info("motion record {} started: {}", name, file);
+    }
+
+    private void closeRecorder() {
+        FFmpegFrameRecorder r = recorder;
+        if (r == null) {
+            return;
+        }
+        recorder = null;
+        try {
+            r.stop();
+            r.release();
+        } catch (Exception e) {
+            failedCount.incrementAndGet();
+            LOGGER.error("motion record {} close exception: {}", name, e.getMessage(), e);
+        }
+        LOGGER.info("motion record {} finished: {}", name, currentFile);
+        currentFile = null;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * 是否正在写录像文件
+     */
+    public boolean isRecording() {
+        return currentFile != null;
+    }
+
+    /**
+     * 正在写的录像文件，没有在录像时为 null
+     */
+    public File getCurrentFile() {
+        return currentFile;
+    }
+
+    public int getPreRollFrames() {
+        return preRollFrames;
+    }
+
+    /**
+     * 已经打开过的录像文件个数
+     */
+    public long getSegmentCount() {
+        return segmentCount.get();
+    }
+
+    public long getRecordedCount() {
+        return recordedCount.get();
+    }
+
+    /**
+     * 录像线程跟不上而丢弃的帧数
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    /**
+     * 检测线程交给录像线程的一帧
+     */
+    private static class QueuedFrame {
+
+        final MatrixImage frame;
+
+        final boolean motion;
+
+        final long nanos;
+
+        QueuedFrame(MatrixImage frame, boolean motion, long nanos) {
+            this.frame = frame;
+            this.motion = motion;
+            this.nanos = nanos;
+        }
+    }
+
+}
@@ -0,0 +1,26 @@
+package com.downgoon.video.stream;
+
+import java.util.List;
+
+import com.downgoon.video.image.MatrixImage;
+import com.downgoon.video.util.Rect;
+
+/**
+ * 运动事件监听器，在工作线程上回调
+ *
+ * @author downgoon@qq.com
+ * @since 2026-10-17
+ */
+public interface MotionListener {
+
+    /**
+     * 某路视频的一帧检测到运动
+     *
+     * @param stream        视频流
+     * @param frameIndex    帧序号，从0开始
+     * @param frame         当前帧，只在回调期间有效，需要保留时调用 {@link MatrixImage#retain()}
+     * @param motionRegions 运动区域
+     */
+    void onMotion(VideoStream stream, long frameIndex, MatrixImage frame, List<Rect> motionRegions);
+
+}
@@ -0,0 +1,60 @@
+package com.downgoon.video.stream;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.downgoon.video.util.Rect;
+
+/**
+ * 一段连续有运动的帧：起止帧号，以及这段时间内运动过的区域
+ *
+ * @author downgoon@qq.com
+ * @since 2026-10-17
+ */
+public class MotionSegment {
+
+    private final long startFrame;
+
+    private long endFrame;
+
+    private final List<Rect> regions = new ArrayList<>();
+
+    MotionSegment(long startFrame) {
+        this.startFrame = startFrame;
+        this.endFrame = startFrame;
+    }
+
+    public long getStartFrame() {
+        return startFrame;
+    }
+
+    /**
+     * 最后一个有运动的帧号（含）
+     */
+    public long getEndFrame() {
+        return endFrame;
+    }
+
+    void setEndFrame(long endFrame) {
+        this.endFrame = endFrame;
+    }
+
+    public List<Rect> getRegions() {
+        return regions;
+    }
+
+    /**
+     * 紧凑的文本格式：{@code 起始帧 结束帧 x1,y1,x2,y2 x1,y1,x2,y2 ...}
+     */
+    @Override
+    public String toString() {
+        StringBuilder line = new StringBuilder();
+        line.append(startFrame).append(' ').append(endFrame);
+        for (Rect rect : regions) {
+            line.append(' ').append(rect.getX1()).append(',').append(rect.getY1()).append(',')
+                    .append(rect.getX2()).append(',').append(rect.getY2());
+        }
+        return line.toString();
+    }
+
+}
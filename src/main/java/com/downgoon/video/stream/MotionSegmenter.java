@@ -0,0 +1,116 @@
+package com.downgoon.video.stream;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.downgoon.video.util.Rect;
+
+/**
+ * 把逐帧的运动区域归并成运动片段：相隔不超过 maxGapFrames 帧的运动帧属于同一片段；
+ * 片段内相交的运动区域合并，区域太多时并入扩张最小的那个，使每个片段只保留几个区域。
+ *
+ * <pre>
+ * MotionSegmenter segmenter = new MotionSegmenter(12);
+ * for each frame: segmenter.accept(frameIndex, motionDetector.detect(frame));
+ * segmenter.finish();
+ * </pre>
+ *
+ * @author downgoon@qq.com
+ * @since 2026-10-17
+ */
+public class MotionSegmenter {
+
+    /**
+     * 每个片段最多保留的区域个数
+     */
+    private static final int MAX_REGIONS = 8;
+
+    private final int maxGapFrames;
+
+    private final List<MotionSegment> segments = new ArrayList<>();
+
+    private MotionSegment current;
+
+    /**
+     * @param maxGapFrames 片段内允许的最长无运动间隔（帧数）
+     */
+    public MotionSegmenter(int maxGapFrames) {
+        this.maxGapFrames = maxGapFrames;
+    }
+
+    /**
+     * 送入一帧的检测结果，帧号递增；没有运动的帧也可以不送
+     */
+    public void accept(long frameIndex, List<Rect> motionRegions) {
+        if (motionRegions.isEmpty()) {
+            return;
+        }
+        if (current != null && frameIndex - current.getEndFrame() > maxGapFrames + 1) {
+            finish();
+        }
+        if (current == null) {
+            current = new MotionSegment(frameIndex);
+        }
+        current.setEndFrame(frameIndex);
+        for (Rect rect : motionRegions) {
+            mergeRegion(current.getRegions(), rect);
+        }
+    }
+
+    /**
+     * 结束当前片段
+     */
+    public void finish() {
+        if (current != null) {
+            segments.add(current);
+            current = null;
+        }
+    }
+
+    /**
+     * 已经结束的片段
+     */
+    public List<MotionSegment> getSegments() {
+        return segments;
+    }
+
+    private static void mergeRegion(List<Rect> regions, Rect rect) {
+        Rect target = null;
+        for (Rect region : regions) {
+            if (intersects(region, rect)) {
+                target = region;
+                break;
+            }
+        }
+        if (target == null && regions.size() < MAX_REGIONS) {
+            regions.add(new Rect(rect.getX1(), rect.getY1(), rect.getX2(), rect.getY2()));
+            return;
+        }
+        if (target == null) {
+            // 区域太多，并入面积扩张最小的那个
+            long bestGrowth = Long.MAX_VALUE;
+            for (Rect region : regions) {
+                long growth = unionArea(region, rect) - (long) region.getWidth() * region.getHeight();
+                if (growth < bestGrowth) {
+                    bestGrowth = growth;
+                    target = region;
+                }
+            }
+        }
+        target.setX1(Math.min(target.getX1(), rect.getX1()));
+        target.setY1(Math.min(target.getY1(), rect.getY1()));
+        target.setX2(Math.max(target.getX2(), rect.getX2()));
+        target.setY2(Math.max(target.getY2(), rect.getY2()));
+    }
+
+    private static boolean intersects(Rect a, Rect b) {
+        return a.getX1() <= b.getX2() && b.getX1() <= a.getX2() && a.getY1() <= b.getY2() && b.getY1() <= a.getY2();
+    }
+
+    private static long unionArea(Rect a, Rect b) {
+        long width = Math.max(a.getX2(), b.getX2()) - Math.min(a.getX1(), b.getX1());
+        long height = Math.max(a.getY2(), b.getY2()) - Math.min(a.getY1(), b.getY1());
+        return width * height;
+    }
+
+}
@@ -0,0 +1,182 @@
+package com.downgoon.video.stream;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.downgoon.video.ai.MotionDetector;
+import com.downgoon.video.camera.CameraInterface;
+
+/**
+ * 多路视频运动检测，不依赖界面：注册N路视频源，每路有自己的检测引擎状态，
+ * 检测共享一个按CPU核数设定的固定工作线程池，而不是每路一个线程；
+ * 会阻塞的抓图在每路自己的抓图线程上提前进行，不占用工作线程。
+ * <p>
+ * 调度是公平的：每路视频每次只处理一帧，然后排到队尾（有帧率上限的，排到下一帧的时间点），各路轮流前进。
+ * 每路视频在队列中至多一个任务，线程池忙不过来时各路一起变慢（对摄像头而言就是少取几帧），不会无限积压。
+ *
+ * <pre>
+ * StreamManager streamManager = new StreamManager();
+ * streamManager.register("gate", camera, new VideoMotionDetector(), 10, listener);
+ * ...
+ * LOGGER.info(streamManager.report());
+ * streamManager.shutdown();
+ * </pre>
+ *
+ * @author downgoon@qq.com
+ * @since 2026-10-17
+ */
+public class StreamManager {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(StreamManager.class);
+
+    private final int workers;
+
+    private final ScheduledThreadPoolExecutor scheduler;
+
+    private final ConcurrentMap<String, VideoStream> streams = new ConcurrentHashMap<>();
+
+    public StreamManager() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param workers 工作线程数，通常等于CPU核数
+     */
+    public StreamManager(int workers) {
+        if (workers < 1) {
+            throw new IllegalArgumentException("workers must be positive: " + workers);
+        }
+        this.workers = workers;
+        this.scheduler = new ScheduledThreadPoolExecutor(workers, new ThreadFactory() {
+
+            private final AtomicInteger threadNumber = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                return new Thread(r, "stream-worker-" + threadNumber.incrementAndGet());
+            }
+        });
+        this.scheduler.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * 注册一路视频，立即开始检测
+     *
+     * @param id             视频流编号
+     * @param source         已连接的视频源
+     * @param motionDetector 这一路专用的检测引擎，不能与其它视频流共用
+     * @param maxFps         帧率上限，0表示不限
+     * @param listener       运动事件监听器，可以为 null
+     * @return 视频流
+     */
+    public VideoStream register(String id, CameraInterface source, MotionDetector motionDetector, double maxFps,
+            MotionListener listener) {
+        if (scheduler.isShutdown()) {
+            throw new IllegalStateException("stream manager already shutdown");
+        }
+        VideoStream stream = new VideoStream(this, id, source, motionDetector, maxFps, listener);
+        if (streams.putIfAbsent(id, stream) != null) {
+            throw new IllegalArgumentException("stream already registered: " + id);
+        }
+        stream.start();
+        LOGGER.info("stream {} registered, max fps {}", id, maxFps);
+        return stream;
+    }
+
+    /**
+     * 注销一路视频，正在处理的一帧处理完后停止。视频源由调用方断开。
+     */
+    public boolean unregister(String id) {
+        VideoStream stream = streams.remove(id);
+        if (stream == null) {
+            return false;
+        }
+        stream.stop();
+        LOGGER.info("stream {} unregistered after {} frames", id, stream.getFrameCount());
+        return true;
+    }
+
+    void schedule(VideoStream stream, long delayNanos) {
+        if (!scheduler.isShutdown()) {
+            scheduler.schedule(stream, delayNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    public VideoStream getStream(String id) {
+        return streams.get(id);
+    }
+
+    public Collection<VideoStream> getStreams() {
+        return new ArrayList<>(streams.values());
+    }
+
+    public int getWorkers() {
+        return workers;
+    }
+
+    /**
+     * 按目前每帧的平均CPU耗时，估算每个核能承载多少路指定帧率的视频。
+     * 每帧耗时包括检测，以及抓图线程上解码、格式转换占用的CPU时间；等待摄像头出帧的时间不计入。
+     *
+     * @param fps 每路视频的帧率
+     * @return 尚未处理任何帧时返回0
+     */
+    public double getStreamsPerCore(double fps) {
+        long frames = 0;
+        long nanos = 0;
+        for (VideoStream stream : streams.values()) {
+            frames += stream.getFrameCount();
+            nanos += stream.getDetectNanos() + stream.getCaptureCpuNanos();
+        }
+        if (frames == 0 || nanos == 0) {
+            return 0;
+        }
+        double nanosPerFrame = nanos / (double) frames;
+        return TimeUnit.SECONDS.toNanos(1) / (nanosPerFrame * fps);
+    }
+
+    /**
+     * 各路视频自上次报告以来的实际帧率、落后次数，以及每核可承载的路数
+     */
+    public synchronized String report() {
+        StringBuilder report = new StringBuilder();
+        List<VideoStream> snapshot = new ArrayList<>(streams.values());
+        double totalFps = 0;
+        for (VideoStream stream : snapshot) {
+            double fps = stream.sampleFps();
+            totalFps += fps;
+            report.append(String.format("%s: %.1f fps (max %.1f), %d frames, %d motion, %d behind, %d failed%n",
+                    stream.getId(), fps, stream.getMaxFps(), stream.getFrameCount(), stream.getMotionFrameCount(),
+                    stream.getBehindCount(), stream.getFailedCount()));
+        }
+        report.append(String.format("%d streams on %d workers, %.1f fps in total, %.1f streams/core at 25 fps",
+                snapshot.size(), workers, totalFps, getStreamsPerCore(25)));
+        return report.toString();
+    }
+
+    /**
+     * 停止所有视频流和工作线程，等待正在处理的帧处理完
+     */
+    public void shutdown() {
+        for (String id : new ArrayList<>(streams.keySet())) {
+            unregister(id);
+        }
+        scheduler.shutdownNow();
+        try {
+            scheduler.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
@@ -0,0 +1,357 @@
+package com.downgoon.video.stream;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.downgoon.video.ai.MotionDetector;
+import com.downgoon.video.camera.CameraException;
+import com.downgoon.video.camera.CameraInterface;
+import com.downgoon.video.image.MatrixImage;
+import com.downgoon.video.util.Rect;
+
+/**
+ * {@link StreamManager} 中的一路视频：一个视频源，加上它自己的检测引擎状态。
+ * <p>
+ * 抓图（等待摄像头出帧、解码、格式转换）在这一路自己的抓图线程上提前进行，解码好的帧放进只有一格的队列；
+ * 共享工作线程只做检测，不会被阻塞的 {@link CameraInterface#getFrame()} 占住。
+ * 队列满时抓图线程等待，视频文件因此不会丢帧；摄像头则和原来一样，检测跟不上时少取几帧。
+ * <p>
+ * 有一帧可检测时才调度，每次调度只处理一帧，处理完再按帧率上限重新排队，因此同一路视频不会同时在两个工作线程上运行，
+ * 检测引擎无需加锁；每路视频在队列中至多一个任务，处理不过来时只会变慢，不会积压。
+ *
+ * @author downgoon@qq.com
+ * @since 2026-10-17
+ */
+public class VideoStream implements Runnable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(VideoStream.class);
+
+    private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+
+    private final StreamManager manager;
+
+    private final String id;
+
+    private final CameraInterface source;
+
+    private final MotionDetector motionDetector;
+
+    private final MotionListener listener;
+
+    /**
+     * 两帧之间的最小间隔，0表示不限帧率
+     */
+    private final long minIntervalNanos;
+
+    /**
+     * 抓图线程提前解码好的帧，只预取一帧
+     */
+    private final BlockingQueue<MatrixImage> decoded = new ArrayBlockingQueue<>(1);
+
+    /**
+     * 是否已经在工作线程池中排队或正在处理
+     */
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    private final Thread captureThread;
+
+    private volatile boolean active = true;
+
+    /**
+     * 视频源已经断开（例如视频文件读完了），不会再有新的帧
+     */
+    private volatile boolean sourceEnded;
+
+    private volatile long nextDueNanos;
+
+    private volatile long frameCount;
+
+    private volatile long motionFrameCount;
+
+    private volatile long failedCount;
+
+    /**
+     * 跟不上帧率上限的次数
+     */
+    private volatile long behindCount;
+
+    /**
+     * 抓图（含格式转换）累计耗时，可能包含等待摄像头出帧的时间
+     */
+    private volatile long captureNanos;
+
+    /**
+     * 抓图（解码、格式转换）累计占用的CPU时间，不含等待摄像头出帧的时间
+     */
+    private volatile long captureCpuNanos;
+
+    /**
+     * 检测累计耗时
+     */
+    private volatile long detectNanos;
+
+    private long lastReportFrames;
+
+    private long lastReportNanos = System.nanoTime();
+
+    VideoStream(StreamManager manager, String id, CameraInterface source, MotionDetector motionDetector,
+            double maxFps, MotionListener listener) {
+        this.manager = manager;
+        this.id = id;
+        this.source = source;
+        this.motionDetector = motionDetector;
+        this.listener = listener;
+        this.minIntervalNanos = maxFps > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / maxFps) : 0L;
+        this.nextDueNanos = System.nanoTime();
+        this.captureThread = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                capture();
+            }
+        }, "stream-capture-" + id);
+        this.captureThread.setDaemon(true);
+    }
+
+    /**
+     * 启动抓图线程
+     */
+    void start() {
+        captureThread.start();
+    }
+
+    /**
+     * 抓图线程：不停地取帧放进队列，队列满时等待工作线程取走
+     */
+    private void capture() {
+        try {
+            while (active) {
+                MatrixImage frame = null;
+                try {
+                    long begin = System.nanoTime();
+                    long beginCpu = currentThreadCpuTime();
+                    frame = source.getFrame();
+                    captureNanos += System.nanoTime() - begin;
+                    captureCpuNanos += beginCpu < 0 ? System.nanoTime() - begin : currentThreadCpuTime() - beginCpu;
+
+                    decoded.put(frame);
+                    frame = null;
+                    trySchedule(System.nanoTime());
+
+                } catch (InterruptedException ie) {
+                    break;
+
+                } catch (CameraException ce) {
+                    if (!active) {
+                        // stop() 中断了正在等待出帧的抓图
+                        break;
+                    }
+                    if (!source.isConnected()) {
+                        // 例如视频文件读完了：队列中剩下的帧检测完后，由工作线程注销
+                        LOGGER.info("stream {} source not connected ({}), unregister it", id, ce.getMessage());
+                        sourceEnded = true;
+                        trySchedule(System.nanoTime());
+                        break;
+                    }
+                    failedCount++;
+                    LOGGER.error("stream {} capture exception: {}", id, ce.getMessage(), ce);
+
+                } catch (Exception e) {
+                    // don't break the stream
+                    failedCount++;
+                    LOGGER.error("stream {} capture exception: {}", id, e.getMessage(), e);
+
+                } finally {
+                    if (frame != null) {
+                        frame.release();
+                    }
+                }
+            }
+        } finally {
+            if (!active) {
+                // stop() 之后放进来的帧，由抓图线程自己回收
+                drain();
+            }
+        }
+    }
+
+    /**
+     * 当前线程占用的CPU时间，JVM不支持时返回-1
+     */
+    private static long currentThreadCpuTime() {
+        if (THREAD_MX_BEAN.isCurrentThreadCpuTimeSupported() && THREAD_MX_BEAN.isThreadCpuTimeEnabled()) {
+            return THREAD_MX_BEAN.getCurrentThreadCpuTime();
+        }
+        return -1L;
+    }
+
+    @Override
+    public void run() {
+        // 先读标志再取帧：视频源断开前放进来的最后一帧不会被漏掉
+        boolean ended = sourceEnded;
+        MatrixImage frame = decoded.poll();
+        if (frame == null) {
+            if (ended) {
+                manager.unregister(id);
+                return;
+            }
+            // 没有可检测的帧，等抓图线程放进来后再调度
+            scheduled.set(false);
+            if (!decoded.isEmpty() || sourceEnded) {
+                trySchedule(System.nanoTime());
+            }
+            return;
+        }
+        if (!active) {
+            frame.release();
+            return;
+        }
+
+        try {
+            long begin = System.nanoTime();
+
+            // motion detection: 对比的参考由这一路视频自己的检测引擎维护
+            List<Rect> motionRegions = motionDetector.detect(frame);
+            detectNanos += System.nanoTime() - begin;
+
+            long frameIndex = frameCount;
+            frameCount = frameIndex + 1;
+            if (!motionRegions.isEmpty()) {
+                motionFrameCount++;
+                if (listener != null) {
+                    listener.onMotion(this, frameIndex, frame, motionRegions);
+                }
+            }
+
+        } catch (Exception e) {
+            // don't break the stream
+            failedCount++;
+            LOGGER.error("stream {} exception: {}", id, e.getMessage(), e);
+
+        } finally {
+            frame.release();
+        }
+
+        reschedule(System.nanoTime());
+    }
+
+    /**
+     * 按帧率上限计算下一帧的时间；跟不上时不补帧，从现在起重新计时。
+     * 队列中已经有下一帧（或者视频源已经断开）时直接排队，否则等抓图线程放进来后再调度。
+     */
+    private void reschedule(long now) {
+        long nextDue = nextDueNanos + minIntervalNanos;
+        if (nextDue < now) {
+            if (minIntervalNanos > 0) {
+                behindCount++;
+            }
+            nextDue = now;
+        }
+        nextDueNanos = nextDue;
+
+        scheduled.set(false);
+        if (!decoded.isEmpty() || sourceEnded) {
+            trySchedule(now);
+        }
+    }
+
+    /**
+     * 没有排队时，按下一帧的时间排进工作线程池。抓图线程和工作线程都会调用，至多一个成功。
+     */
+    private void trySchedule(long now) {
+        if (active && scheduled.compareAndSet(false, true)) {
+            manager.schedule(this, Math.max(0L, nextDueNanos - now));
+        }
+    }
+
+    /**
+     * 回收队列中尚未检测的帧
+     */
+    private void drain() {
+        MatrixImage frame;
+        while ((frame = decoded.poll()) != null) {
+            frame.release();
+        }
+    }
+
+    /**
+     * 停止抓图线程，回收尚未检测的帧。正在进行的抓图不能中断时，由抓图线程抓完后自己回收。
+     */
+    void stop() {
+        active = false;
+        captureThread.interrupt();
+        drain();
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public CameraInterface getSource() {
+        return source;
+    }
+
+    public MotionDetector getMotionDetector() {
+        return motionDetector;
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+
+    /**
+     * 帧率上限，0表示不限
+     */
+    public double getMaxFps() {
+        return minIntervalNanos > 0 ? TimeUnit.SECONDS.toNanos(1) / (double) minIntervalNanos : 0;
+    }
+
+    public long getFrameCount() {
+        return frameCount;
+    }
+
+    public long getMotionFrameCount() {
+        return motionFrameCount;
+    }
+
+    public long getFailedCount() {
+        return failedCount;
+    }
+
+    public long getBehindCount() {
+        return behindCount;
+    }
+
+    public long getCaptureNanos() {
+        return captureNanos;
+    }
+
+    public long getCaptureCpuNanos() {
+        return captureCpuNanos;
+    }
+
+    public long getDetectNanos() {
+        return detectNanos;
+    }
+
+    /**
+     * 自上次调用以来的实际帧率，只由 {@link StreamManager#report()} 调用
+     */
+    double sampleFps() {
+        long now = System.nanoTime();
+        long frames = frameCount;
+        double fps = (frames - lastReportFrames) * 1e9 / Math.max(1, now - lastReportNanos);
+        lastReportFrames = frames;
+        lastReportNanos = now;
+        return fps;
+    }
+
+}
@@ -0,0 +1,66 @@
+package com.downgoon.video.ai;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * 基于 Vector API 的运动像素统计内核：一次对比一个向量宽度的像素（AVX2 为8个），
+ * 三个通道的色差取最大值后与阈值比较一次，再统计掩码中的运动像素个数。
+ * <p>
+ * 只打包在多版本 JAR 的 META-INF/versions/17 下，由 {@link MotionPixelKernel#best()} 在运行时按需加载。
+ *
+ * @author downgoon@qq.com
+ * @since 2026-10-17
+ */
+final class VectorMotionPixelKernel extends MotionPixelKernel {
+
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+
+    @Override
+    int countMotionPixels(int[] currRgb, int[] diffRgb, int from, int to, int threshold) {
+        int motion = 0;
+        int i = from;
+        int bound = from + SPECIES.loopBound(to - from);
+        for (; i < bound; i += SPECIES.length()) {
+            IntVector curr = IntVector.fromArray(SPECIES, currRgb, i);
+            IntVector diff = IntVector.fromArray(SPECIES, diffRgb, i);
+            motion += moved(curr, diff, threshold).trueCount();
+        }
+
+        // 不足一个向量宽度的尾部像素，用掩码加载
+        if (i < to) {
+            VectorMask<Integer> tail = SPECIES.indexInRange(i, to);
+            IntVector curr = IntVector.fromArray(SPECIES, currRgb, i, tail);
+            IntVector diff = IntVector.fromArray(SPECIES, diffRgb, i, tail);
+            motion += moved(curr, diff, threshold).and(tail).trueCount();
+        }
+        return motion;
+    }
+
+    /**
+     * RGB任一通道的色差大于色差阈值的像素
+     */
+    private static VectorMask<Integer> moved(IntVector curr, IntVector diff, int threshold) {
+        IntVector red = channel(curr, 16).sub(channel(diff, 16)).abs();
+        IntVector green = channel(curr, 8).sub(channel(diff, 8)).abs();
+        IntVector blue = curr.and(0xFF).sub(diff.and(0xFF)).abs();
+        return red.max(green).max(blue).compare(VectorOperators.GT, threshold);
+    }
+
+    private static IntVector channel(IntVector rgb, int shift) {
+        return rgb.lanewise(VectorOperators.LSHR, shift).and(0xFF);
+    }
+
+    @Override
+    String name() {
+        return "vector-" + SPECIES.vectorBitSize();
+    }
+
+    @Override
+    int lanes() {
+        return SPECIES.length();
+    }
+
+}
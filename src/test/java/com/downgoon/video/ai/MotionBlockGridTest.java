@@ -0,0 +1,61 @@
+package com.downgoon.video.ai;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.downgoon.video.util.Rect;
+
+/**
+ * @author downgoon@qq.com
+ * @since 2026-10-17
+ */
+public class MotionBlockGridTest {
+
+    /**
+     * 最坏情况：整幅 1080p 画面都在运动，区块粒度取2，约52万个区块连成一片。
+     * 递归合并在这里会栈溢出，显式栈应当合并出唯一一个覆盖整幅画面的运动区域。
+     */
+    @Test
+    public void testFullFrameMotion() {
+        int width = 1920;
+        int height = 1080;
+        int blockSize = 2;
+        MotionBlockGrid grid = new MotionBlockGrid(width, height, blockSize);
+        grid.reset();
+        Arrays.fill(grid.counts, blockSize * blockSize);
+
+        List<Rect> motionRects = new ArrayList<>();
+        int rectCount = grid.judge(MotionBlockGrid.copyInto(motionRects));
+
+        assertEquals(1, rectCount);
+        assertEquals(1, motionRects.size());
+        Rect rect = motionRects.get(0);
+        assertEquals(0, rect.getX1());
+        assertEquals(0, rect.getY1());
+        // 合并时邻居区块只把右底点推到区块的左上角，最后一列、最后一行区块的宽度不计入
+        assertTrue(rect.getX2() >= width - blockSize);
+        assertTrue(rect.getY2() >= height - blockSize);
+    }
+
+    /**
+     * 复用同一个区块矩阵再检测一帧，结果不变
+     */
+    @Test
+    public void testFullFrameMotionRepeated() {
+        MotionBlockGrid grid = new MotionBlockGrid(1920, 1080, 2);
+        for (int frame = 0; frame < 2; frame++) {
+            grid.reset();
+            Arrays.fill(grid.counts, 4);
+            List<Rect> motionRects = new ArrayList<>();
+            assertEquals(1, grid.judge(MotionBlockGrid.copyInto(motionRects)));
+            assertEquals(1, motionRects.size());
+        }
+    }
+
+}
@@ -0,0 +1,80 @@
+package com.downgoon.video.ai;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+/**
+ * Vector API 内核与标量内核的等价性。JDK 17 以下，或者没有加入 jdk.incubator.vector 模块时跳过。
+ *
+ * @author downgoon@qq.com
+ * @since 2026-10-17
+ */
+public class MotionPixelKernelTest {
+
+    private static final int THRESHOLD = 30;
+
+    @Test
+    public void testVectorMatchesScalar() {
+        MotionPixelKernel vector = MotionPixelKernel.vector();
+        Assume.assumeNotNull(vector);
+        MotionPixelKernel scalar = MotionPixelKernel.scalar();
+
+        Random random = new Random(20161017L);
+        int lanes = vector.lanes();
+        // 短于、等于、长于一个向量宽度，以及多个向量加不足一个向量的尾部
+        int[] lengths = {0, 1, lanes - 1, lanes, lanes + 1, 2 * lanes - 1, 2 * lanes, 3 * lanes + 5, 1920};
+        for (int length : lengths) {
+            for (int from = 0; from <= lanes; from++) {
+                int[] currRgb = new int[from + length + lanes];
+                int[] diffRgb = new int[currRgb.length];
+                randomRow(random, currRgb, diffRgb);
+
+                assertEquals(vector.name() + " length " + length + " from " + from,
+                        scalar.countMotionPixels(currRgb, diffRgb, from, from + length, THRESHOLD),
+                        vector.countMotionPixels(currRgb, diffRgb, from, from + length, THRESHOLD));
+            }
+        }
+    }
+
+    @Test
+    public void testVectorMatchesScalarOnRandomRows() {
+        MotionPixelKernel vector = MotionPixelKernel.vector();
+        Assume.assumeNotNull(vector);
+        MotionPixelKernel scalar = MotionPixelKernel.scalar();
+
+        Random random = new Random(7L);
+        for (int i = 0; i < 1000; i++) {
+            int[] currRgb = new int[1 + random.nextInt(300)];
+            int[] diffRgb = new int[currRgb.length];
+            randomRow(random, currRgb, diffRgb);
+            int from = random.nextInt(currRgb.length);
+            int to = from + random.nextInt(currRgb.length - from + 1);
+            int threshold = random.nextInt(256);
+
+            assertEquals(scalar.countMotionPixels(currRgb, diffRgb, from, to, threshold),
+                    vector.countMotionPixels(currRgb, diffRgb, from, to, threshold));
+        }
+    }
+
+    /**
+     * 随机的一行像素，对比图每个通道的色差落在阈值附近，两边都能取到
+     */
+    private static void randomRow(Random random, int[] currRgb, int[] diffRgb) {
+        for (int i = 0; i < currRgb.length; i++) {
+            int curr = random.nextInt();
+            int diff = curr & 0xFF000000;
+            for (int shift = 0; shift <= 16; shift += 8) {
+                int channel = (curr >>> shift) & 0xFF;
+                int delta = random.nextInt(2 * THRESHOLD + 5) - THRESHOLD - 2;
+                diff |= Math.max(0, Math.min(255, channel + delta)) << shift;
+            }
+            currRgb[i] = curr;
+            diffRgb[i] = diff;
+        }
+    }
+
+}
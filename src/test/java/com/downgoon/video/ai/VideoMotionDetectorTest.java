@@ -0,0 +1,67 @@
+package com.downgoon.video.ai;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import com.downgoon.video.camera.CameraException;
+import com.downgoon.video.camera.SyntheticCamera;
+import com.downgoon.video.image.MatrixImage;
+import com.downgoon.video.util.Rect;
+
+/**
+ * @author downgoon@qq.com
+ * @since 2026-10-17
+ */
+public class VideoMotionDetectorTest {
+
+    /**
+     * 合并的最坏情况：1080p 画面每帧整体切换场景，区块粒度取2，几乎所有区块都在运动、连成一片。
+     * 应当合并出一个覆盖几乎整幅画面的运动区域，不会栈溢出。
+     */
+    @Test
+    public void testSceneChangeMergesIntoOneRegion() throws CameraException {
+        int width = 1920;
+        int height = 1080;
+        SyntheticCamera camera = new SyntheticCamera(20161017L);
+        camera.setMovingRects(0, 1, 0);
+        camera.setNoise(0);
+        camera.setSceneChangeInterval(1);
+        camera.connect(0, width, height);
+
+        VideoMotionDetector detector = new VideoMotionDetector(2, 10, 1);
+        try {
+            for (int i = 0; i < 3; i++) {
+                MatrixImage frame = camera.getFrame();
+                try {
+                    List<Rect> motionRects = detector.detect(frame);
+                    if (i == 0) {
+                        // 第一帧只作为对比的参考
+                        continue;
+                    }
+                    assertTrue("frame " + i + " has no motion", !motionRects.isEmpty());
+                    Rect largest = motionRects.get(0);
+                    for (Rect rect : motionRects) {
+                        if (rect.getWidth() * (long) rect.getHeight() > largest.getWidth()
+                                * (long) largest.getHeight()) {
+                            largest = rect;
+                        }
+                    }
+                    assertEquals(0, largest.getX1());
+                    assertEquals(0, largest.getY1());
+                    assertTrue(largest.getX2() >= width * 9 / 10);
+                    assertTrue(largest.getY2() >= height * 9 / 10);
+                } finally {
+                    frame.release();
+                }
+            }
+        } finally {
+            detector.shutdown();
+            camera.disconnect();
+        }
+    }
+
+}
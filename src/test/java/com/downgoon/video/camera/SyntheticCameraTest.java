@@ -0,0 +1,73 @@
+package com.downgoon.video.camera;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import com.downgoon.video.image.MatrixImage;
+
+/**
+ * @author downgoon@qq.com
+ * @since 2026-10-17
+ */
+public class SyntheticCameraTest {
+
+    /**
+     * 连接之后改场景参数会让已经生成的数组越界或者通道进位，应当拒绝；断开后可以改了重新连接
+     */
+    @Test
+    public void testRejectReconfigureAfterConnect() throws CameraException {
+        SyntheticCamera camera = new SyntheticCamera(1L);
+        camera.setMovingRects(2, 20, 4);
+        camera.connect(0, 160, 120);
+        try {
+            camera.setMovingRects(8, 20, 4);
+            fail("moving rects changed after connect");
+        } catch (IllegalStateException expected) {
+            // expected
+        }
+        try {
+            camera.setNoise(32);
+            fail("noise changed after connect");
+        } catch (IllegalStateException expected) {
+            // expected
+        }
+        try {
+            camera.setLightingShift(128, 10);
+            fail("lighting shift changed after connect");
+        } catch (IllegalStateException expected) {
+            // expected
+        }
+        camera.getFrame().release();
+
+        camera.disconnect();
+        camera.setMovingRects(8, 20, 4);
+        camera.setNoise(32);
+        camera.setLightingShift(128, 10);
+        camera.connect(0, 160, 120);
+        for (int i = 0; i < 20; i++) {
+            camera.getFrame().release();
+        }
+        camera.disconnect();
+    }
+
+    /**
+     * 同一个种子、同样的配置，生成的帧序列相同
+     */
+    @Test
+    public void testSameSeedSameFrames() throws CameraException {
+        SyntheticCamera a = new SyntheticCamera(20161017L);
+        SyntheticCamera b = new SyntheticCamera(20161017L);
+        a.connect(0, 64, 48);
+        b.connect(0, 64, 48);
+        for (int i = 0; i < 5; i++) {
+            MatrixImage frameA = a.getFrame();
+            MatrixImage frameB = b.getFrame();
+            assertArrayEquals(frameA.getRgbArray(), frameB.getRgbArray());
+            frameA.release();
+            frameB.release();
+        }
+    }
+
+}
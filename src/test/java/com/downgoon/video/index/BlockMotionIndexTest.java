@@ -0,0 +1,203 @@
+package com.downgoon.video.index;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.downgoon.video.util.Rect;
+
+/**
+ * @author downgoon@qq.com
+ * @since 2026-10-17
+ */
+public class BlockMotionIndexTest {
+
+    /**
+     * 区块粒度2，区块矩阵 100 x 45：一行100个区块，与 long 的64位不对齐，游程会跨行、跨 long
+     */
+    private static final int WIDTH = 200;
+
+    private static final int HEIGHT = 90;
+
+    private static final int BLOCK_SIZE = 2;
+
+    private static final int BLOCK_WIDTH = WIDTH / BLOCK_SIZE;
+
+    private static final int BLOCKS = BLOCK_WIDTH * (HEIGHT / BLOCK_SIZE);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * 逐帧写入位图，再逐个区块查询，读出的位图与写入的一致。
+     * 时间戳增量和记录体长度都需要多字节的变长整数。
+     */
+    @Test
+    public void testRunsRoundTrip() throws IOException {
+        File file = folder.newFile("roundtrip.blocks");
+        Random random = new Random(20161017L);
+        List<long[]> frames = new ArrayList<>();
+        // 一段从第60块到第140块：跨过第64、128块（long 边界）和第100块（行边界）
+        frames.add(bitmap(60, 141));
+        // 整幅画面是一段
+        frames.add(bitmap(0, BLOCKS));
+        // 最后一块，以及最后一个 long 中不足64位的部分
+        frames.add(bitmap(BLOCKS - 1, BLOCKS));
+        // 每行行尾和下一行行首连成一段
+        long[] rowEnds = new long[bitmapLength()];
+        for (int row = 1; row < BLOCKS / BLOCK_WIDTH; row++) {
+            set(rowEnds, row * BLOCK_WIDTH - 3, row * BLOCK_WIDTH + 2);
+        }
+        frames.add(rowEnds);
+        frames.add(new long[bitmapLength()]);
+        for (int i = 0; i < 8; i++) {
+            long[] bits = new long[bitmapLength()];
+            for (int block = 0; block < BLOCKS; block++) {
+                if (random.nextInt(4) == 0) {
+                    set(bits, block, block + 1);
+                }
+            }
+            frames.add(bits);
+        }
+
+        long[] timestamps = new long[frames.size()];
+        try (BlockMotionIndexWriter writer = new BlockMotionIndexWriter(file, WIDTH, HEIGHT, BLOCK_SIZE)) {
+            long timestamp = 0;
+            for (int f = 0; f < frames.size(); f++) {
+                timestamp += f % 2 == 0 ? 40 : 1L << 40;
+                timestamps[f] = timestamp;
+                writer.append(timestamp, frames.get(f));
+            }
+        }
+
+        BlockMotionIndex index = BlockMotionIndex.open(file);
+        assertEquals(frames.size(), index.getFrameCount());
+        assertEquals(timestamps[0], index.getFirstTimestamp());
+        assertEquals(timestamps[timestamps.length - 1], index.getLastTimestamp());
+        assertEquals(file.length(), index.getSizeBytes());
+        for (int f = 0; f < frames.size(); f++) {
+            long[] bits = frames.get(f);
+            for (int block = 0; block < BLOCKS; block++) {
+                int x = block % BLOCK_WIDTH * BLOCK_SIZE;
+                int y = block / BLOCK_WIDTH * BLOCK_SIZE;
+                Rect region = new Rect(x, y, x + BLOCK_SIZE, y + BLOCK_SIZE);
+                long expected = (bits[block >>> 6] >>> block & 1L) != 0 ? 1 : 0;
+                assertEquals("frame " + f + " block " + block, expected,
+                        index.countMotionFrames(timestamps[f], timestamps[f], region));
+            }
+        }
+    }
+
+    /**
+     * 同一时间戳的帧跨过检查点：查询起点正好是这个时间戳时，检查点之前的那些帧不能漏掉
+     */
+    @Test
+    public void testDuplicateTimestampsAcrossCheckpoint() throws IOException {
+        File file = folder.newFile("checkpoint.blocks");
+        long[] motion = bitmap(0, 1);
+        long[] still = new long[bitmapLength()];
+        int frames = 3 * BlockMotionIndex.CHECKPOINT_INTERVAL;
+        // 第1000到1100帧时间戳都是5000，跨过第1024帧的检查点；第2040到2060帧都是9000，跨过第2048帧
+        try (BlockMotionIndexWriter writer = new BlockMotionIndexWriter(file, WIDTH, HEIGHT, BLOCK_SIZE)) {
+            for (int f = 0; f < frames; f++) {
+                writer.append(timestamp(f), f % 2 == 0 ? motion : still);
+            }
+        }
+
+        BlockMotionIndex index = BlockMotionIndex.open(file);
+        assertEquals(frames, index.getFrameCount());
+        assertEquals(51, index.countMotionFrames(5000, 5000, null));
+        assertEquals(11, index.countMotionFrames(9000, 9000, null));
+        assertEquals(motionFrames(1000, frames), index.countMotionFrames(5000, Long.MAX_VALUE, null));
+        assertEquals(motionFrames(2040, frames), index.countMotionFrames(9000, Long.MAX_VALUE, null));
+
+        List<MotionSpan> spans = index.findMotion(5000, 5000, null, 0L);
+        assertEquals(1, spans.size());
+        assertEquals(5000, spans.get(0).getStart());
+        assertEquals(5000, spans.get(0).getEnd());
+        assertEquals(51, spans.get(0).getFrames());
+    }
+
+    /**
+     * 写入中断留下不完整的记录：读取时忽略，接着追加前先截掉，新记录都能读出
+     */
+    @Test
+    public void testTruncateTornTail() throws IOException {
+        File file = folder.newFile("torn.blocks");
+        long[] motion = bitmap(BLOCK_WIDTH, 2 * BLOCK_WIDTH);
+        try (BlockMotionIndexWriter writer = new BlockMotionIndexWriter(file, WIDTH, HEIGHT, BLOCK_SIZE)) {
+            for (int f = 0; f < 10; f++) {
+                writer.append(f * 40L, motion);
+            }
+        }
+        long validLength = file.length();
+
+        // 一条记录只写了头和记录体的前两个字节：声明记录体有50个字节
+        try (FileOutputStream out = new FileOutputStream(file, true)) {
+            out.write(new byte[] { 40, 50, 1, 0 });
+        }
+        BlockMotionIndex torn = BlockMotionIndex.open(file);
+        assertEquals(10, torn.getFrameCount());
+        assertEquals(validLength, torn.getSizeBytes());
+
+        try (BlockMotionIndexWriter writer = new BlockMotionIndexWriter(file, WIDTH, HEIGHT, BLOCK_SIZE)) {
+            assertEquals(10, writer.getFrameCount());
+            for (int f = 10; f < 15; f++) {
+                writer.append(f * 40L, motion);
+            }
+        }
+
+        BlockMotionIndex index = BlockMotionIndex.open(file);
+        assertEquals(15, index.getFrameCount());
+        assertEquals(14 * 40L, index.getLastTimestamp());
+        assertEquals(file.length(), index.getSizeBytes());
+        assertEquals(5, index.countMotionFrames(400, 560, new Rect(0, BLOCK_SIZE, WIDTH, 2 * BLOCK_SIZE)));
+        assertEquals(0, index.countMotionFrames(0, 560, new Rect(0, 0, WIDTH, BLOCK_SIZE)));
+    }
+
+    /**
+     * 第 f 帧的时间戳：每帧间隔4，其中两段帧的时间戳相同
+     */
+    private static long timestamp(int f) {
+        if (f >= 1000 && f <= 1100) {
+            return 5000;
+        }
+        if (f >= 2040 && f <= 2060) {
+            return 9000;
+        }
+        return f < 1000 ? f * 4L : f < 2040 ? 5000 + (f - 1100) * 4L : 9000 + (f - 2060) * 4L;
+    }
+
+    /**
+     * 第 [from, to) 帧中有运动的帧数：偶数帧有运动
+     */
+    private static long motionFrames(int from, int to) {
+        return (to - from + (from % 2 == 0 ? 1 : 0)) / 2;
+    }
+
+    private static int bitmapLength() {
+        return (BLOCKS + 63) >>> 6;
+    }
+
+    private static long[] bitmap(int from, int to) {
+        long[] bits = new long[bitmapLength()];
+        set(bits, from, to);
+        return bits;
+    }
+
+    private static void set(long[] bits, int from, int to) {
+        for (int block = from; block < to; block++) {
+            bits[block >>> 6] |= 1L << block;
+        }
+    }
+
+}